@@ -52,7 +52,7 @@ public class HtmlPage implements AdminWorkgroupResource
     public static final String RESOURCE_TYPE = "HTMLPAGE";
     public static final String ROLE_NONE = "none";
     private static final String EMPTY_STRING = "";
-    private static final int ENABLED = 0;
+    private static final int ENABLED = 1;
     private static HtmlPageWorkgroupRemovalListener _listenerWorkgroup;
     private int _nId;
     private int _nStatus;
@@ -63,6 +63,8 @@ public class HtmlPage implements AdminWorkgroupResource
     private String _strRole;
     private Timestamp _dateStart;
     private Timestamp _dateEnd;
+    private long _lVersion;
+    private Timestamp _dateUpdate;
 
     /** Creates a new instance of HtmlPage */
     public HtmlPage( )
@@ -269,6 +271,48 @@ public class HtmlPage implements AdminWorkgroupResource
 	{
 		this._dateEnd = dateEnd;
 	}
+
+    /**
+     * Returns the version of this htmlpage : the value of the global change counter at its last modification.
+     *
+     * @return the htmlpage version
+     */
+    public long getVersion( )
+    {
+        return _lVersion;
+    }
+
+    /**
+     * Sets the version of the htmlpage
+     *
+     * @param lVersion
+     *            the new version
+     */
+    public void setVersion( long lVersion )
+    {
+        _lVersion = lVersion;
+    }
+
+    /**
+     * Returns the date of the last modification of this htmlpage
+     *
+     * @return the date of the last modification, null if it has not been modified since this date is recorded
+     */
+    public Timestamp getDateUpdate( )
+    {
+        return _dateUpdate;
+    }
+
+    /**
+     * Sets the date of the last modification of the htmlpage
+     *
+     * @param dateUpdate
+     *            the date of the last modification
+     */
+    public void setDateUpdate( Timestamp dateUpdate )
+    {
+        _dateUpdate = dateUpdate;
+    }
     
     
 }
@@ -33,12 +33,21 @@
  */
 package fr.paris.lutece.plugins.htmlpage.business;
 
+import fr.paris.lutece.plugins.htmlpage.service.EnumStatus;
 import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.workgroup.AdminWorkgroupService;
 import fr.paris.lutece.util.sql.DAOUtil;
 
 import java.sql.Statement;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 
 /**
  * This class provides Data Access methods for HtmlPage objects
@@ -48,13 +57,53 @@ import java.util.Collection;
 public class HtmlPageDAO implements IHtmlPageDAO
 {
     // Constants
-    private static final String SQL_QUERY_SELECT = "SELECT id_htmlpage, description, html_content, status, workgroup_key, role, date_start, date_end FROM htmlpage WHERE id_htmlpage = ? ";
-    private static final String SQL_QUERY_SELECTALL = "SELECT id_htmlpage, description, html_content, status, workgroup_key, role, date_start, date_end FROM htmlpage ORDER BY description, id_htmlpage DESC";
-    private static final String SQL_QUERY_SELECT_ENABLED = "SELECT id_htmlpage, description, html_content, status, workgroup_key, role, date_start, date_end FROM htmlpage WHERE id_htmlpage = ? AND status = 0 ";
-    private static final String SQL_QUERY_SELECT_ENABLED_HTMLPAGE_LIST = "SELECT id_htmlpage, description, html_content, status, workgroup_key, role, date_start, date_end FROM htmlpage WHERE status = 0 ORDER BY description, id_htmlpage DESC";
-    private static final String SQL_QUERY_INSERT = "INSERT INTO htmlpage ( description, html_content, status, workgroup_key, role, date_start, date_end )  VALUES ( ?, ?, ?, ?, ?, ?, ? ) ";
+    private static final String SQL_QUERY_SELECT = "SELECT id_htmlpage, description, html_content, status, workgroup_key, role, date_start, date_end, version, date_update FROM htmlpage WHERE id_htmlpage = ? ";
+    private static final String SQL_QUERY_SELECTALL = "SELECT id_htmlpage, description, html_content, status, workgroup_key, role, date_start, date_end, version, date_update FROM htmlpage ORDER BY description, id_htmlpage DESC";
+    private static final String SQL_QUERY_SELECT_BY_IDS = "SELECT id_htmlpage, description, html_content, status, workgroup_key, role, date_start, date_end, version, date_update FROM htmlpage WHERE id_htmlpage IN ";
+    private static final String SQL_QUERY_SELECT_ENABLED_BY_IDS = "SELECT id_htmlpage, description, html_content, status, workgroup_key, role, date_start, date_end, version, date_update FROM htmlpage WHERE ( status = ? OR ( status = ? AND date_start < ? AND ( date_end IS NULL OR date_end > ? ) ) ) AND id_htmlpage IN ";
+    private static final String SQL_QUERY_SELECTALL_SUMMARY = "SELECT id_htmlpage, description, status, workgroup_key, role, date_start, date_end, version, date_update FROM htmlpage ORDER BY description, id_htmlpage DESC";
+    private static final String SQL_QUERY_SELECT_SUMMARY_BY_FILTER = "SELECT id_htmlpage, description, status, workgroup_key, role, date_start, date_end, version, date_update FROM htmlpage ";
+    private static final String SQL_QUERY_COUNT_BY_FILTER = "SELECT COUNT(*) FROM htmlpage ";
+    private static final String SQL_QUERY_SELECT_WORKGROUP_USED = "SELECT 1 FROM htmlpage WHERE workgroup_key = ? LIMIT 1";
+    private static final String SQL_QUERY_SELECT_HTML_CONTENT = "SELECT html_content FROM htmlpage WHERE id_htmlpage = ? ";
+    private static final String SQL_QUERY_SELECT_ENABLED = "SELECT id_htmlpage, description, html_content, status, workgroup_key, role, date_start, date_end, version, date_update FROM htmlpage WHERE id_htmlpage = ? AND ( status = ? OR ( status = ? AND date_start < ? AND ( date_end IS NULL OR date_end > ? ) ) ) ";
+    private static final String SQL_QUERY_SELECT_ENABLED_HTMLPAGE_LIST = "SELECT id_htmlpage, description, html_content, status, workgroup_key, role, date_start, date_end, version, date_update FROM htmlpage WHERE status = ? OR ( status = ? AND date_start < ? AND ( date_end IS NULL OR date_end > ? ) ) ORDER BY description, id_htmlpage DESC";
+    private static final String SQL_QUERY_SELECT_SCHEDULED_SUMMARY_LIST = "SELECT id_htmlpage, description, status, workgroup_key, role, date_start, date_end, version, date_update FROM htmlpage WHERE status = ? OR ( status = ? AND date_start IS NOT NULL AND ( date_end IS NULL OR date_end > ? ) ) ORDER BY description, id_htmlpage DESC";
+    private static final String SQL_QUERY_SELECT_SCHEDULED_HTMLPAGE_LIST = "SELECT id_htmlpage, description, html_content, status, workgroup_key, role, date_start, date_end, version, date_update FROM htmlpage WHERE status = ? OR ( status = ? AND date_start IS NOT NULL AND ( date_end IS NULL OR date_end > ? ) ) ORDER BY description, id_htmlpage DESC";
+    private static final String SQL_QUERY_INSERT = "INSERT INTO htmlpage ( description, html_content, status, workgroup_key, role, date_start, date_end, version, date_update )  VALUES ( ?, ?, ?, ?, ?, ?, ?, ?, ? ) ";
+    private static final String SQL_QUERY_INCREMENT_CHANGE_COUNTER = "UPDATE htmlpage_version SET version = version + 1 ";
+    private static final String SQL_QUERY_SELECT_CHANGE_COUNTER = "SELECT version FROM htmlpage_version ";
+    private static final String SQL_QUERY_INSERT_CHANGELOG = "INSERT INTO htmlpage_changelog ( id_htmlpage, date_change ) VALUES ( ?, ? ) ";
+    private static final String SQL_QUERY_SELECT_CHANGELOG = "SELECT id_change, id_htmlpage FROM htmlpage_changelog WHERE id_change > ? ORDER BY id_change ";
+    private static final String SQL_QUERY_SELECT_LAST_CHANGELOG = "SELECT MAX(id_change) FROM htmlpage_changelog ";
+    private static final String SQL_QUERY_SELECT_FIRST_CHANGELOG = "SELECT MIN(id_change) FROM htmlpage_changelog ";
+    private static final String SQL_QUERY_DELETE_CHANGELOG = "DELETE FROM htmlpage_changelog WHERE date_change < ? ";
     private static final String SQL_QUERY_DELETE = "DELETE FROM htmlpage WHERE id_htmlpage = ? ";
-    private static final String SQL_QUERY_UPDATE = "UPDATE htmlpage SET description = ? , html_content = ?, status = ?, workgroup_key = ?, role = ?, date_start = ?, date_end = ? WHERE id_htmlpage = ?  ";
+    private static final String SQL_QUERY_UPDATE = "UPDATE htmlpage SET description = ? , html_content = ?, status = ?, workgroup_key = ?, role = ?, date_start = ?, date_end = ?, version = ?, date_update = ? WHERE id_htmlpage = ?  ";
+    private static final String SQL_WHERE = " WHERE ";
+    private static final String SQL_AND = " AND ";
+    private static final String SQL_FILTER_DESCRIPTION = "description LIKE ? ESCAPE '!' ";
+    private static final String SQL_FILTER_STATUS = "status = ? ";
+    private static final String SQL_FILTER_WORKGROUP_KEYS = "( workgroup_key IS NULL OR workgroup_key = '' OR workgroup_key IN ( ";
+    private static final String SQL_FILTER_WORKGROUP_KEYS_END = " ) ) ";
+    private static final String LIKE_ESCAPE = "!";
+    private static final String LIKE_WILDCARD = "%";
+    private static final String SQL_ORDER_BY = " ORDER BY ";
+    private static final String SQL_ASC = " ASC";
+    private static final String SQL_DESC = " DESC";
+    private static final String SQL_ORDER_BY_ID = ", id_htmlpage DESC";
+    private static final String SQL_LIMIT = " LIMIT ? OFFSET ? ";
+    private static final int IN_LIST_CHUNK_SIZE = 500;
+    private static final Map<String, String> MAP_SORT_COLUMNS = new HashMap<>( );
+
+    static
+    {
+        MAP_SORT_COLUMNS.put( HtmlPageFilter.SORT_DESCRIPTION, "description" );
+        MAP_SORT_COLUMNS.put( HtmlPageFilter.SORT_STATUS, "status" );
+        MAP_SORT_COLUMNS.put( HtmlPageFilter.SORT_WORKGROUP, "workgroup_key" );
+        MAP_SORT_COLUMNS.put( HtmlPageFilter.SORT_DATE_START, "date_start" );
+        MAP_SORT_COLUMNS.put( HtmlPageFilter.SORT_DATE_END, "date_end" );
+    }
 
     ///////////////////////////////////////////////////////////////////////////////////////
     // Access methods to data
@@ -82,8 +131,149 @@ public class HtmlPageDAO implements IHtmlPageDAO
             daoUtil.setString( ++i, htmlpage.getRole( ) );
             daoUtil.setTimestamp( ++i, htmlpage.getDateStart( ) );
             daoUtil.setTimestamp( ++i, htmlpage.getDateEnd( ) );
+            daoUtil.setLong( ++i, htmlpage.getVersion( ) );
+            daoUtil.setTimestamp( ++i, htmlpage.getDateUpdate( ) );
             
             daoUtil.executeUpdate( );
+
+            if ( daoUtil.nextGeneratedKey( ) )
+            {
+                htmlpage.setId( daoUtil.getGeneratedKeyInt( 1 ) );
+            }
+        }
+    }
+
+    /**
+     * Increment the global change counter of the htmlpages. The increment locks the counter, so the value read afterwards in the same transaction is
+     * the one written by this increment.
+     *
+     * @param plugin
+     *            The plugin
+     * @return the new value of the counter
+     */
+    public long incrementChangeCounter( Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INCREMENT_CHANGE_COUNTER, plugin ) )
+        {
+            daoUtil.executeUpdate( );
+        }
+
+        return selectChangeCounter( plugin );
+    }
+
+    /**
+     * Load the global change counter of the htmlpages
+     *
+     * @param plugin
+     *            The plugin
+     * @return the value of the counter
+     */
+    public long selectChangeCounter( Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_CHANGE_COUNTER, plugin ) )
+        {
+            daoUtil.executeQuery( );
+
+            return daoUtil.next( ) ? daoUtil.getLong( 1 ) : 0;
+        }
+    }
+
+    /**
+     * Append a change of a htmlpage to the change log
+     *
+     * @param nHtmlPageId
+     *            The identifier of the htmlpage
+     * @param plugin
+     *            The plugin
+     * @return the identifier of the change
+     */
+    public long insertChangeLog( int nHtmlPageId, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT_CHANGELOG, Statement.RETURN_GENERATED_KEYS, plugin ) )
+        {
+            daoUtil.setInt( 1, nHtmlPageId );
+            daoUtil.setTimestamp( 2, new Timestamp( System.currentTimeMillis( ) ) );
+            daoUtil.executeUpdate( );
+
+            return daoUtil.nextGeneratedKey( ) ? daoUtil.getGeneratedKeyLong( 1 ) : 0;
+        }
+    }
+
+    /**
+     * Load the changes of the change log following a given one
+     *
+     * @param lIdChange
+     *            The identifier of the last known change
+     * @param plugin
+     *            The plugin
+     * @return the ids of the changed htmlpages by change identifier, in the order of the changes
+     */
+    public Map<Long, Integer> selectChangeLog( long lIdChange, Plugin plugin )
+    {
+        Map<Long, Integer> mapChanges = new LinkedHashMap<>( );
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_CHANGELOG, plugin ) )
+        {
+            daoUtil.setLong( 1, lIdChange );
+            daoUtil.executeQuery( );
+
+            while ( daoUtil.next( ) )
+            {
+                mapChanges.put( daoUtil.getLong( 1 ), daoUtil.getInt( 2 ) );
+            }
+        }
+
+        return mapChanges;
+    }
+
+    /**
+     * Load the identifier of the last change of the change log
+     *
+     * @param plugin
+     *            The plugin
+     * @return the identifier, 0 if the change log is empty
+     */
+    public long selectLastChangeLogId( Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_LAST_CHANGELOG, plugin ) )
+        {
+            daoUtil.executeQuery( );
+
+            return daoUtil.next( ) ? daoUtil.getLong( 1 ) : 0;
+        }
+    }
+
+    /**
+     * Load the identifier of the first change kept in the change log
+     *
+     * @param plugin
+     *            The plugin
+     * @return the identifier, 0 if the change log is empty
+     */
+    public long selectFirstChangeLogId( Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_FIRST_CHANGELOG, plugin ) )
+        {
+            daoUtil.executeQuery( );
+
+            return daoUtil.next( ) ? daoUtil.getLong( 1 ) : 0;
+        }
+    }
+
+    /**
+     * Delete the changes of the change log older than a given date
+     *
+     * @param date
+     *            The date
+     * @param plugin
+     *            The plugin
+     */
+    public void deleteChangeLog( Timestamp date, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE_CHANGELOG, plugin ) )
+        {
+            daoUtil.setTimestamp( 1, date );
+            daoUtil.executeUpdate( );
         }
     }
 
@@ -116,12 +306,94 @@ public class HtmlPageDAO implements IHtmlPageDAO
                 htmlpage.setRole( daoUtil.getString( 6 ) );
                 htmlpage.setDateStart( daoUtil.getTimestamp( 7 ) );
                 htmlpage.setDateEnd( daoUtil.getTimestamp( 8 ) );
+                htmlpage.setVersion( daoUtil.getLong( 9 ) );
+                htmlpage.setDateUpdate( daoUtil.getTimestamp( 10 ) );
             }
         
             return htmlpage;
         }
     }
 
+    /**
+     * Load the data of several HtmlPages from the table. The ids are queried by chunks so that the IN lists stay small.
+     * 
+     * @param listHtmlPageIds
+     *            The identifiers of the HtmlPages
+     * @param plugin
+     *            The plugin
+     * @return the HtmlPages found, by id
+     */
+    public Map<Integer, HtmlPage> selectByIds( Collection<Integer> listHtmlPageIds, Plugin plugin )
+    {
+        return selectByIds( SQL_QUERY_SELECT_BY_IDS, listHtmlPageIds, null, plugin );
+    }
+
+    /**
+     * Load the data of several HtmlPages enabled at a given date from the table. The ids are queried by chunks so that the IN lists stay small.
+     * 
+     * @param listHtmlPageIds
+     *            The identifiers of the HtmlPages
+     * @param date
+     *            The date at which the HtmlPages must be enabled
+     * @param plugin
+     *            The plugin
+     * @return the enabled HtmlPages found, by id
+     */
+    public Map<Integer, HtmlPage> selectEnabledByIds( Collection<Integer> listHtmlPageIds, Timestamp date, Plugin plugin )
+    {
+        return selectByIds( SQL_QUERY_SELECT_ENABLED_BY_IDS, listHtmlPageIds, date, plugin );
+    }
+
+    /**
+     * Load the data of several HtmlPages from the table, by chunks of ids
+     * 
+     * @param strQuery
+     *            The query, ending with the IN keyword
+     * @param listHtmlPageIds
+     *            The identifiers of the HtmlPages
+     * @param date
+     *            The date at which the HtmlPages must be enabled, or null if the query has no enabled predicate
+     * @param plugin
+     *            The plugin
+     * @return the HtmlPages found, by id
+     */
+    private Map<Integer, HtmlPage> selectByIds( String strQuery, Collection<Integer> listHtmlPageIds, Timestamp date, Plugin plugin )
+    {
+        Map<Integer, HtmlPage> mapHtmlPages = new HashMap<>( );
+        List<Integer> listIds = new ArrayList<>( new LinkedHashSet<>( listHtmlPageIds ) );
+
+        for ( int nFrom = 0; nFrom < listIds.size( ); nFrom += IN_LIST_CHUNK_SIZE )
+        {
+            List<Integer> listChunk = listIds.subList( nFrom, Math.min( nFrom + IN_LIST_CHUNK_SIZE, listIds.size( ) ) );
+            String strSql = strQuery + "( " + String.join( ", ", Collections.nCopies( listChunk.size( ), "?" ) ) + " )";
+
+            try ( DAOUtil daoUtil = new DAOUtil( strSql, plugin ) )
+            {
+                int i = 0;
+
+                if ( date != null )
+                {
+                    daoUtil.setInt( ++i, EnumStatus.enabled.getId( ) );
+                    daoUtil.setInt( ++i, EnumStatus.conditioned.getId( ) );
+                    daoUtil.setTimestamp( ++i, date );
+                    daoUtil.setTimestamp( ++i, date );
+                }
+
+                for ( Integer nId : listChunk )
+                {
+                    daoUtil.setInt( ++i, nId );
+                }
+
+                for ( HtmlPage htmlpage : selectHtmlPageList( daoUtil ) )
+                {
+                    mapHtmlPages.put( htmlpage.getId( ), htmlpage );
+                }
+            }
+        }
+
+        return mapHtmlPages;
+    }
+
     /**
      * Delete a record from the table
      * 
@@ -160,8 +432,10 @@ public class HtmlPageDAO implements IHtmlPageDAO
             daoUtil.setString( 5, htmlpage.getRole( ) );
             daoUtil.setTimestamp( 6, htmlpage.getDateStart( ) );
             daoUtil.setTimestamp( 7, htmlpage.getDateEnd( ) );
+            daoUtil.setLong( 8, htmlpage.getVersion( ) );
+            daoUtil.setTimestamp( 9, htmlpage.getDateUpdate( ) );
            
-            daoUtil.setInt( 8, nHtmlPageId );
+            daoUtil.setInt( 10, nHtmlPageId );
     
             daoUtil.executeUpdate( );
         }
@@ -192,6 +466,78 @@ public class HtmlPageDAO implements IHtmlPageDAO
                 htmlpage.setRole( daoUtil.getString( 6 ) );
                 htmlpage.setDateStart( daoUtil.getTimestamp( 7 ) );
                 htmlpage.setDateEnd( daoUtil.getTimestamp( 8 ) );
+                htmlpage.setVersion( daoUtil.getLong( 9 ) );
+                htmlpage.setDateUpdate( daoUtil.getTimestamp( 10 ) );
+                
+                htmlpageList.add( htmlpage );
+            }
+
+            return htmlpageList;
+        }
+    }
+
+    /**
+     * Load the list of htmlpages without their html content
+     *
+     * @param plugin
+     *            The plugin
+     * @return The Collection of the HtmlPages
+     */
+    public Collection<HtmlPage> selectAllSummaries( Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECTALL_SUMMARY, plugin ) )
+        {
+            return selectHtmlPageSummaryList( daoUtil );
+        }
+    }
+
+    /**
+     * Load a page of the list of htmlpages matching a filter, without their html content
+     *
+     * @param filter
+     *            The filter
+     * @param plugin
+     *            The plugin
+     * @return The list of the HtmlPages
+     */
+    public List<HtmlPage> selectSummariesByFilter( HtmlPageFilter filter, Plugin plugin )
+    {
+        StringBuilder sbSql = new StringBuilder( SQL_QUERY_SELECT_SUMMARY_BY_FILTER );
+        appendFilter( sbSql, filter );
+
+        String strSortColumn = MAP_SORT_COLUMNS.getOrDefault( filter.getSortedAttribute( ), MAP_SORT_COLUMNS.get( HtmlPageFilter.SORT_DESCRIPTION ) );
+        sbSql.append( SQL_ORDER_BY ).append( strSortColumn ).append( filter.isSortAscending( ) ? SQL_ASC : SQL_DESC ).append( SQL_ORDER_BY_ID );
+
+        if ( filter.getLimit( ) != HtmlPageFilter.ALL_ROWS )
+        {
+            sbSql.append( SQL_LIMIT );
+        }
+
+        List<HtmlPage> htmlpageList = new ArrayList<>( );
+        try ( DAOUtil daoUtil = new DAOUtil( sbSql.toString( ), plugin ) )
+        {
+            int nIndex = setFilterParameters( daoUtil, filter );
+
+            if ( filter.getLimit( ) != HtmlPageFilter.ALL_ROWS )
+            {
+                daoUtil.setInt( nIndex++, filter.getLimit( ) );
+                daoUtil.setInt( nIndex, filter.getOffset( ) );
+            }
+
+            daoUtil.executeQuery( );
+    
+            while ( daoUtil.next( ) )
+            {
+                HtmlPage htmlpage = new HtmlPage( );
+                htmlpage.setId( daoUtil.getInt( 1 ) );
+                htmlpage.setDescription( daoUtil.getString( 2 ) );
+                htmlpage.setStatus( daoUtil.getInt( 3 ) );
+                htmlpage.setWorkgroup( daoUtil.getString( 4 ) );
+                htmlpage.setRole( daoUtil.getString( 5 ) );
+                htmlpage.setDateStart( daoUtil.getTimestamp( 6 ) );
+                htmlpage.setDateEnd( daoUtil.getTimestamp( 7 ) );
+                htmlpage.setVersion( daoUtil.getLong( 8 ) );
+                htmlpage.setDateUpdate( daoUtil.getTimestamp( 9 ) );
                 
                 htmlpageList.add( htmlpage );
             }
@@ -200,20 +546,202 @@ public class HtmlPageDAO implements IHtmlPageDAO
         }
     }
 
+    /**
+     * Count the htmlpages matching a filter
+     *
+     * @param filter
+     *            The filter
+     * @param plugin
+     *            The plugin
+     * @return The number of HtmlPages
+     */
+    public int countByFilter( HtmlPageFilter filter, Plugin plugin )
+    {
+        StringBuilder sbSql = new StringBuilder( SQL_QUERY_COUNT_BY_FILTER );
+        appendFilter( sbSql, filter );
+
+        try ( DAOUtil daoUtil = new DAOUtil( sbSql.toString( ), plugin ) )
+        {
+            setFilterParameters( daoUtil, filter );
+            daoUtil.executeQuery( );
+
+            int nCount = 0;
+
+            if ( daoUtil.next( ) )
+            {
+                nCount = daoUtil.getInt( 1 );
+            }
+
+            return nCount;
+        }
+    }
+
+    /**
+     * Append the WHERE clause of a filter to a query
+     *
+     * @param sbSql
+     *            The query
+     * @param filter
+     *            The filter
+     */
+    private static void appendFilter( StringBuilder sbSql, HtmlPageFilter filter )
+    {
+        List<String> listClauses = new ArrayList<>( );
+
+        if ( filter.getDescription( ) != null && !filter.getDescription( ).isEmpty( ) )
+        {
+            listClauses.add( SQL_FILTER_DESCRIPTION );
+        }
+
+        if ( filter.getStatus( ) != HtmlPageFilter.ALL_STATUS )
+        {
+            listClauses.add( SQL_FILTER_STATUS );
+        }
+
+        if ( filter.getWorkgroupKeys( ) != null )
+        {
+            listClauses.add( SQL_FILTER_WORKGROUP_KEYS + String.join( ", ", Collections.nCopies( getWorkgroupKeys( filter ).size( ), "?" ) )
+                    + SQL_FILTER_WORKGROUP_KEYS_END );
+        }
+
+        if ( !listClauses.isEmpty( ) )
+        {
+            sbSql.append( SQL_WHERE ).append( String.join( SQL_AND, listClauses ) );
+        }
+    }
+
+    /**
+     * Set the parameters of the WHERE clause of a filter
+     *
+     * @param daoUtil
+     *            The DAOUtil
+     * @param filter
+     *            The filter
+     * @return The index of the next parameter
+     */
+    private static int setFilterParameters( DAOUtil daoUtil, HtmlPageFilter filter )
+    {
+        int nIndex = 1;
+
+        if ( filter.getDescription( ) != null && !filter.getDescription( ).isEmpty( ) )
+        {
+            daoUtil.setString( nIndex++, LIKE_WILDCARD + escapeLike( filter.getDescription( ) ) + LIKE_WILDCARD );
+        }
+
+        if ( filter.getStatus( ) != HtmlPageFilter.ALL_STATUS )
+        {
+            daoUtil.setInt( nIndex++, filter.getStatus( ) );
+        }
+
+        if ( filter.getWorkgroupKeys( ) != null )
+        {
+            for ( String strWorkgroupKey : getWorkgroupKeys( filter ) )
+            {
+                daoUtil.setString( nIndex++, strWorkgroupKey );
+            }
+        }
+
+        return nIndex;
+    }
+
+    /**
+     * Get the workgroups of a filter, with the workgroup of the htmlpages visible by all the users as in
+     * {@link AdminWorkgroupService#getAuthorizedCollection}
+     *
+     * @param filter
+     *            The filter
+     * @return The workgroup keys
+     */
+    private static Collection<String> getWorkgroupKeys( HtmlPageFilter filter )
+    {
+        Collection<String> listWorkgroupKeys = new LinkedHashSet<>( );
+        listWorkgroupKeys.add( AdminWorkgroupService.ALL_GROUPS );
+        listWorkgroupKeys.addAll( filter.getWorkgroupKeys( ) );
+
+        return listWorkgroupKeys;
+    }
+
+    /**
+     * Escape the wildcards of a LIKE pattern, so that they are searched as characters
+     *
+     * @param strValue
+     *            The searched value
+     * @return The escaped value
+     */
+    private static String escapeLike( String strValue )
+    {
+        return strValue.replace( LIKE_ESCAPE, LIKE_ESCAPE + LIKE_ESCAPE ).replace( LIKE_WILDCARD, LIKE_ESCAPE + LIKE_WILDCARD ).replace( "_",
+                LIKE_ESCAPE + "_" );
+    }
+
+    /**
+     * Check if a workgroup is used by at least one htmlpage
+     *
+     * @param strWorkgroupKey
+     *            The workgroup key
+     * @param plugin
+     *            The plugin
+     * @return true if a htmlpage belongs to the workgroup
+     */
+    public boolean checkWorkgroupUsed( String strWorkgroupKey, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_WORKGROUP_USED, plugin ) )
+        {
+            daoUtil.setString( 1, strWorkgroupKey );
+            daoUtil.executeQuery( );
+
+            return daoUtil.next( );
+        }
+    }
+
+    /**
+     * Load the html content of a htmlpage
+     * 
+     * @param nHtmlPageId
+     *            The identifier of HtmlPage
+     * @param plugin
+     *            The plugin
+     * @return the html content, or null if the htmlpage doesn't exist
+     */
+    public String loadHtmlContent( int nHtmlPageId, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_HTML_CONTENT, plugin ) )
+        {
+            daoUtil.setInt( 1, nHtmlPageId );
+            daoUtil.executeQuery( );
+    
+            String strHtmlContent = null;
+    
+            if ( daoUtil.next( ) )
+            {
+                strHtmlContent = daoUtil.getString( 1 );
+            }
+        
+            return strHtmlContent;
+        }
+    }
+
     /**
      * Load enabled htmlpage
      * 
      * @param nHtmlPageId
      *            The page id
+     * @param date
+     *            The date at which the htmlpage must be enabled
      * @param plugin
      *            The plugin
      * @return The Collection of the HtmlPages
      */
-    public HtmlPage selectEnabledHtmlPage( int nHtmlPageId, Plugin plugin )
+    public HtmlPage selectEnabledHtmlPage( int nHtmlPageId, Timestamp date, Plugin plugin )
     {
         try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_ENABLED, plugin ) )
         {
-            daoUtil.setInt( 1, nHtmlPageId );
+            int i = 0;
+            daoUtil.setInt( ++i, nHtmlPageId );
+            daoUtil.setInt( ++i, EnumStatus.enabled.getId( ) );
+            daoUtil.setInt( ++i, EnumStatus.conditioned.getId( ) );
+            daoUtil.setTimestamp( ++i, date );
+            daoUtil.setTimestamp( ++i, date );
             daoUtil.executeQuery( );
     
             HtmlPage htmlpage = null;
@@ -229,6 +757,8 @@ public class HtmlPageDAO implements IHtmlPageDAO
                 htmlpage.setRole( daoUtil.getString( 6 ) );
                 htmlpage.setDateStart( daoUtil.getTimestamp( 7 ) );
                 htmlpage.setDateEnd( daoUtil.getTimestamp( 8 ) );
+                htmlpage.setVersion( daoUtil.getLong( 9 ) );
+                htmlpage.setDateUpdate( daoUtil.getTimestamp( 10 ) );
             }
       
             return htmlpage;
@@ -236,34 +766,130 @@ public class HtmlPageDAO implements IHtmlPageDAO
     }
 
     /**
-     * Load the list of htmlpages
+     * Load the list of htmlpages enabled at a given date
      *
+     * @param date
+     *            The date at which the htmlpages must be enabled
      * @param plugin
      *            The plugin
      * @return The Collection of the HtmlPages
      */
-    public Collection<HtmlPage> selectEnabledHtmlPageList( Plugin plugin )
+    public Collection<HtmlPage> selectEnabledHtmlPageList( Timestamp date, Plugin plugin )
     {
-        Collection<HtmlPage> htmlpageList = new ArrayList<HtmlPage>( );
         try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_ENABLED_HTMLPAGE_LIST, plugin ) )
         {
-            daoUtil.executeQuery( );
-    
-            while ( daoUtil.next( ) )
-            {
-                HtmlPage htmlpage = new HtmlPage( );
-                htmlpage.setId( daoUtil.getInt( 1 ) );
-                htmlpage.setDescription( daoUtil.getString( 2 ) );
-                htmlpage.setHtmlContent( daoUtil.getString( 3 ) );
-                htmlpage.setStatus( daoUtil.getInt( 4 ) );
-                htmlpage.setWorkgroup( daoUtil.getString( 5 ) );
-                htmlpage.setRole( daoUtil.getString( 6 ) );
-                htmlpage.setDateStart( daoUtil.getTimestamp( 7 ) );
-                htmlpage.setDateEnd( daoUtil.getTimestamp( 8 ) );
-                htmlpageList.add( htmlpage );
-            }
-            
-            return htmlpageList;
+            int i = 0;
+            daoUtil.setInt( ++i, EnumStatus.enabled.getId( ) );
+            daoUtil.setInt( ++i, EnumStatus.conditioned.getId( ) );
+            daoUtil.setTimestamp( ++i, date );
+            daoUtil.setTimestamp( ++i, date );
+
+            return selectHtmlPageList( daoUtil );
+        }
+    }
+
+    /**
+     * Load the list of htmlpages which are enabled, or conditioned and not ended at a given date
+     *
+     * @param date
+     *            The date
+     * @param plugin
+     *            The plugin
+     * @return The Collection of the HtmlPages
+     */
+    public Collection<HtmlPage> selectScheduledHtmlPageList( Timestamp date, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_SCHEDULED_HTMLPAGE_LIST, plugin ) )
+        {
+            int i = 0;
+            daoUtil.setInt( ++i, EnumStatus.enabled.getId( ) );
+            daoUtil.setInt( ++i, EnumStatus.conditioned.getId( ) );
+            daoUtil.setTimestamp( ++i, date );
+
+            return selectHtmlPageList( daoUtil );
+        }
+    }
+
+    /**
+     * Load the list of htmlpages which are enabled, or conditioned and not ended at a given date, without their html content
+     *
+     * @param date
+     *            The date
+     * @param plugin
+     *            The plugin
+     * @return The Collection of the HtmlPages
+     */
+    public Collection<HtmlPage> selectScheduledHtmlPageSummaryList( Timestamp date, Plugin plugin )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_SCHEDULED_SUMMARY_LIST, plugin ) )
+        {
+            int i = 0;
+            daoUtil.setInt( ++i, EnumStatus.enabled.getId( ) );
+            daoUtil.setInt( ++i, EnumStatus.conditioned.getId( ) );
+            daoUtil.setTimestamp( ++i, date );
+
+            return selectHtmlPageSummaryList( daoUtil );
         }
     }
+
+    /**
+     * Execute a query and read the htmlpages it returns, without their html content
+     *
+     * @param daoUtil
+     *            The DAOUtil holding the query with its parameters set
+     * @return The Collection of the HtmlPages
+     */
+    private static Collection<HtmlPage> selectHtmlPageSummaryList( DAOUtil daoUtil )
+    {
+        Collection<HtmlPage> htmlpageList = new ArrayList<HtmlPage>( );
+        daoUtil.executeQuery( );
+
+        while ( daoUtil.next( ) )
+        {
+            HtmlPage htmlpage = new HtmlPage( );
+            htmlpage.setId( daoUtil.getInt( 1 ) );
+            htmlpage.setDescription( daoUtil.getString( 2 ) );
+            htmlpage.setStatus( daoUtil.getInt( 3 ) );
+            htmlpage.setWorkgroup( daoUtil.getString( 4 ) );
+            htmlpage.setRole( daoUtil.getString( 5 ) );
+            htmlpage.setDateStart( daoUtil.getTimestamp( 6 ) );
+            htmlpage.setDateEnd( daoUtil.getTimestamp( 7 ) );
+            htmlpage.setVersion( daoUtil.getLong( 8 ) );
+            htmlpage.setDateUpdate( daoUtil.getTimestamp( 9 ) );
+            htmlpageList.add( htmlpage );
+        }
+
+        return htmlpageList;
+    }
+
+    /**
+     * Execute a query and read the htmlpages it returns
+     *
+     * @param daoUtil
+     *            The DAOUtil holding the query with its parameters set
+     * @return The Collection of the HtmlPages
+     */
+    private static Collection<HtmlPage> selectHtmlPageList( DAOUtil daoUtil )
+    {
+        Collection<HtmlPage> htmlpageList = new ArrayList<HtmlPage>( );
+        daoUtil.executeQuery( );
+
+        while ( daoUtil.next( ) )
+        {
+            HtmlPage htmlpage = new HtmlPage( );
+            htmlpage.setId( daoUtil.getInt( 1 ) );
+            htmlpage.setDescription( daoUtil.getString( 2 ) );
+            htmlpage.setHtmlContent( daoUtil.getString( 3 ) );
+            htmlpage.setStatus( daoUtil.getInt( 4 ) );
+            htmlpage.setWorkgroup( daoUtil.getString( 5 ) );
+            htmlpage.setRole( daoUtil.getString( 6 ) );
+            htmlpage.setDateStart( daoUtil.getTimestamp( 7 ) );
+            htmlpage.setDateEnd( daoUtil.getTimestamp( 8 ) );
+            htmlpage.setVersion( daoUtil.getLong( 9 ) );
+            htmlpage.setDateUpdate( daoUtil.getTimestamp( 10 ) );
+            htmlpageList.add( htmlpage );
+        }
+
+        return htmlpageList;
+    }
 }
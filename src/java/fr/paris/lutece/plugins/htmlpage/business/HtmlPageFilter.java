@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.htmlpage.business;
+
+import java.util.Collection;
+
+/**
+ * This class represents the criteria of a search of htmlpages, with the sort and the window of rows to load
+ */
+public class HtmlPageFilter
+{
+    public static final String SORT_DESCRIPTION = "description";
+    public static final String SORT_STATUS = "status";
+    public static final String SORT_WORKGROUP = "workgroup";
+    public static final String SORT_DATE_START = "dateStart";
+    public static final String SORT_DATE_END = "dateEnd";
+    public static final int ALL_STATUS = -1;
+    public static final int ALL_ROWS = -1;
+
+    private String _strDescription;
+    private int _nStatus = ALL_STATUS;
+    private Collection<String> _listWorkgroupKeys;
+    private String _strSortedAttribute = SORT_DESCRIPTION;
+    private boolean _bSortAscending = true;
+    private int _nOffset;
+    private int _nLimit = ALL_ROWS;
+
+    /**
+     * Returns the part of the description to search
+     *
+     * @return the description, null to search all the htmlpages
+     */
+    public String getDescription( )
+    {
+        return _strDescription;
+    }
+
+    /**
+     * Sets the part of the description to search
+     *
+     * @param strDescription
+     *            the description
+     */
+    public void setDescription( String strDescription )
+    {
+        _strDescription = strDescription;
+    }
+
+    /**
+     * Returns the status to search
+     *
+     * @return the status, {@link #ALL_STATUS} to search all the htmlpages
+     */
+    public int getStatus( )
+    {
+        return _nStatus;
+    }
+
+    /**
+     * Sets the status to search
+     *
+     * @param nStatus
+     *            the status
+     */
+    public void setStatus( int nStatus )
+    {
+        _nStatus = nStatus;
+    }
+
+    /**
+     * Returns the workgroups of the htmlpages to search. The htmlpages of no workgroup or of all the workgroups are always found.
+     *
+     * @return the workgroup keys, null to search all the htmlpages
+     */
+    public Collection<String> getWorkgroupKeys( )
+    {
+        return _listWorkgroupKeys;
+    }
+
+    /**
+     * Sets the workgroups of the htmlpages to search
+     *
+     * @param listWorkgroupKeys
+     *            the workgroup keys
+     */
+    public void setWorkgroupKeys( Collection<String> listWorkgroupKeys )
+    {
+        _listWorkgroupKeys = listWorkgroupKeys;
+    }
+
+    /**
+     * Returns the attribute used to sort the htmlpages
+     *
+     * @return the sorted attribute
+     */
+    public String getSortedAttribute( )
+    {
+        return _strSortedAttribute;
+    }
+
+    /**
+     * Sets the attribute used to sort the htmlpages
+     *
+     * @param strSortedAttribute
+     *            one of the SORT_* constants
+     */
+    public void setSortedAttribute( String strSortedAttribute )
+    {
+        _strSortedAttribute = strSortedAttribute;
+    }
+
+    /**
+     * @return true if the htmlpages are sorted in ascending order
+     */
+    public boolean isSortAscending( )
+    {
+        return _bSortAscending;
+    }
+
+    /**
+     * @param bSortAscending
+     *            true to sort the htmlpages in ascending order
+     */
+    public void setSortAscending( boolean bSortAscending )
+    {
+        _bSortAscending = bSortAscending;
+    }
+
+    /**
+     * @return the number of rows to skip
+     */
+    public int getOffset( )
+    {
+        return _nOffset;
+    }
+
+    /**
+     * @param nOffset
+     *            the number of rows to skip
+     */
+    public void setOffset( int nOffset )
+    {
+        _nOffset = nOffset;
+    }
+
+    /**
+     * @return the maximum number of rows to load, {@link #ALL_ROWS} to load all of them
+     */
+    public int getLimit( )
+    {
+        return _nLimit;
+    }
+
+    /**
+     * @param nLimit
+     *            the maximum number of rows to load
+     */
+    public void setLimit( int nLimit )
+    {
+        _nLimit = nLimit;
+    }
+}
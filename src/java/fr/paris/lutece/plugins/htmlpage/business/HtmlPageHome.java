@@ -33,16 +33,26 @@
  */
 package fr.paris.lutece.plugins.htmlpage.business;
 
+import java.sql.Timestamp;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
+import fr.paris.lutece.plugins.htmlpage.service.HtmlPageActivationIndex;
+import fr.paris.lutece.plugins.htmlpage.service.HtmlPageChangeLogPoller;
 import fr.paris.lutece.plugins.htmlpage.service.HtmlPageService;
+import fr.paris.lutece.plugins.htmlpage.service.HtmlPageWorkgroupIndex;
+import fr.paris.lutece.plugins.htmlpage.service.PublicHtmlPageCacheService;
 import fr.paris.lutece.plugins.htmlpage.service.search.HtmlPageIndexer;
 import fr.paris.lutece.plugins.htmlpage.utils.HtmlPageIndexerUtils;
+import fr.paris.lutece.plugins.htmlpage.utils.HtmlPageUtil;
 import fr.paris.lutece.portal.business.indexeraction.IndexerAction;
 import fr.paris.lutece.portal.service.plugin.Plugin;
 import fr.paris.lutece.portal.service.search.IndexationService;
 import fr.paris.lutece.portal.service.spring.SpringContextService;
+import fr.paris.lutece.portal.service.util.AppException;
 import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import fr.paris.lutece.util.sql.TransactionManager;
 
 /**
  * This class provides instances management methods (create, find, ...) for Htmlpage objects
@@ -61,6 +71,117 @@ public class HtmlPageHome
     {
     }
 
+    /**
+     * Increments the global change counter and gives its new value to a htmlpage about to be stored. Must be called in the transaction storing the
+     * htmlpage, which holds the lock on the counter until it is committed.
+     *
+     * @param htmlpage
+     *            The htmlpage
+     * @param plugin
+     *            The Plugin object
+     */
+    private static void setNewVersion( HtmlPage htmlpage, Plugin plugin )
+    {
+        htmlpage.setVersion( _dao.incrementChangeCounter( plugin ) );
+        htmlpage.setDateUpdate( new Timestamp( System.currentTimeMillis( ) ) );
+    }
+
+    /**
+     * Rolls back the transaction of a failed creation, modification or removal
+     *
+     * @param e
+     *            The cause of the failure
+     * @param plugin
+     *            The Plugin object
+     * @return the exception to throw
+     */
+    private static AppException rollBack( Exception e, Plugin plugin )
+    {
+        TransactionManager.rollBack( plugin );
+
+        return new AppException( e.getMessage( ), e );
+    }
+
+    /**
+     * Returns the global change counter of the htmlpages, incremented by every creation, modification and removal
+     *
+     * @param plugin
+     *            The Plugin object
+     * @return the value of the counter
+     */
+    public static long getChangeCounter( Plugin plugin )
+    {
+        return _dao.selectChangeCounter( plugin );
+    }
+
+    /**
+     * Appends a change to the change log read by the other nodes, if it is enabled. The poller of this node skips the change, which is applied to the
+     * in-memory data of this node by the caller.
+     *
+     * @param nId
+     *            The htmlpage id
+     * @param plugin
+     *            The Plugin object
+     */
+    private static void appendChangeLog( int nId, Plugin plugin )
+    {
+        if ( HtmlPageChangeLogPoller.isEnabled( ) )
+        {
+            HtmlPageChangeLogPoller.getInstance( ).addLocalChange( _dao.insertChangeLog( nId, plugin ) );
+        }
+    }
+
+    /**
+     * Returns the changes of the change log following a given one
+     *
+     * @param lIdChange
+     *            The identifier of the last known change
+     * @param plugin
+     *            The Plugin object
+     * @return the ids of the changed htmlpages by change identifier, in the order of the changes
+     */
+    public static Map<Long, Integer> findChangeLog( long lIdChange, Plugin plugin )
+    {
+        return _dao.selectChangeLog( lIdChange, plugin );
+    }
+
+    /**
+     * Returns the identifier of the last change of the change log
+     *
+     * @param plugin
+     *            The Plugin object
+     * @return the identifier, 0 if the change log is empty
+     */
+    public static long getLastChangeLogId( Plugin plugin )
+    {
+        return _dao.selectLastChangeLogId( plugin );
+    }
+
+    /**
+     * Returns the identifier of the first change kept in the change log
+     *
+     * @param plugin
+     *            The Plugin object
+     * @return the identifier, 0 if the change log is empty
+     */
+    public static long getFirstChangeLogId( Plugin plugin )
+    {
+        return _dao.selectFirstChangeLogId( plugin );
+    }
+
+    /**
+     * Removes the changes of the change log older than a given date
+     *
+     * @param date
+     *            The date
+     * @param plugin
+     *            The Plugin object
+     */
+    public static void removeChangeLog( Timestamp date, Plugin plugin )
+    {
+        _dao.deleteChangeLog( date, plugin );
+    }
+
     /**
      * Creation of an instance of htmlpage
      *
@@ -72,9 +193,25 @@ public class HtmlPageHome
      */
     public static HtmlPage create( HtmlPage htmlpage, Plugin plugin )
     {
-        _dao.insert( htmlpage, plugin );
+        TransactionManager.beginTransaction( plugin );
 
-        if ( htmlpage.isEnabled( ) )
+        try
+        {
+            setNewVersion( htmlpage, plugin );
+            _dao.insert( htmlpage, plugin );
+            appendChangeLog( htmlpage.getId( ), plugin );
+            TransactionManager.commitTransaction( plugin );
+        }
+        catch( Exception e )
+        {
+            throw rollBack( e, plugin );
+        }
+
+        HtmlPageActivationIndex.getInstance( ).put( htmlpage );
+        HtmlPageWorkgroupIndex.getInstance( ).put( htmlpage );
+        PublicHtmlPageCacheService.getService( ).invalidateHtmlPage( htmlpage.getId( ) );
+
+        if ( HtmlPageUtil.isActivedPageHtml( htmlpage ) )
         {
             String strIdHtmlPage = Integer.toString( htmlpage.getId( ) );
             IndexationService.addIndexerAction( strIdHtmlPage, AppPropertiesService.getProperty( HtmlPageIndexer.PROPERTY_INDEXER_NAME ),
@@ -98,7 +235,28 @@ public class HtmlPageHome
     public static HtmlPage update( HtmlPage htmlpage, Plugin plugin )
     {
         String strIdHtmlPage = Integer.toString( htmlpage.getId( ) );
-        if ( htmlpage.isEnabled( ) )
+        HtmlPage oldPage = HtmlPageUtil.isActivedPageHtml( htmlpage ) ? null : HtmlPageService.getInstance( ).getEnableHtmlPage( htmlpage.getId( ) );
+
+        // The page is stored before the caches are invalidated and the events are fired, so that they read the new data
+        TransactionManager.beginTransaction( plugin );
+
+        try
+        {
+            setNewVersion( htmlpage, plugin );
+            _dao.store( htmlpage, plugin );
+            appendChangeLog( htmlpage.getId( ), plugin );
+            TransactionManager.commitTransaction( plugin );
+        }
+        catch( Exception e )
+        {
+            throw rollBack( e, plugin );
+        }
+
+        HtmlPageActivationIndex.getInstance( ).put( htmlpage );
+        HtmlPageWorkgroupIndex.getInstance( ).put( htmlpage );
+        PublicHtmlPageCacheService.getService( ).invalidateHtmlPage( htmlpage.getId( ) );
+
+        if ( HtmlPageUtil.isActivedPageHtml( htmlpage ) )
         {
             IndexationService.addIndexerAction( strIdHtmlPage, AppPropertiesService.getProperty( HtmlPageIndexer.PROPERTY_INDEXER_NAME ),
                     IndexerAction.TASK_MODIFY );
@@ -107,8 +265,6 @@ public class HtmlPageHome
         }
         else
         {
-            HtmlPage oldPage = HtmlPageService.getInstance( ).getEnableHtmlPage( Integer.parseInt( strIdHtmlPage ) );
-
             if ( oldPage != null )
             {
                 IndexationService.addIndexerAction( strIdHtmlPage + "_" + HtmlPageIndexer.SHORT_NAME,
@@ -118,8 +274,6 @@ public class HtmlPageHome
             }
         }
 
-        _dao.store( htmlpage, plugin );
-
         return htmlpage;
     }
 
@@ -133,16 +287,31 @@ public class HtmlPageHome
      */
     public static void remove( HtmlPage htmlpage, Plugin plugin )
     {
-        _dao.delete( htmlpage, plugin );
+        // The counter is incremented in the transaction of the removal, so that no snapshot built after the removal gets the previous value
+        TransactionManager.beginTransaction( plugin );
 
-        if ( htmlpage.isEnabled( ) )
+        try
         {
-            String strIdHtmlPage = Integer.toString( htmlpage.getId( ) );
-            IndexationService.addIndexerAction( strIdHtmlPage + "_" + HtmlPageIndexer.SHORT_NAME,
-                    AppPropertiesService.getProperty( HtmlPageIndexer.PROPERTY_INDEXER_NAME ), IndexerAction.TASK_DELETE );
-
-            HtmlPageIndexerUtils.addIndexerAction( strIdHtmlPage, IndexerAction.TASK_DELETE );
+            _dao.incrementChangeCounter( plugin );
+            _dao.delete( htmlpage, plugin );
+            appendChangeLog( htmlpage.getId( ), plugin );
+            TransactionManager.commitTransaction( plugin );
         }
+        catch( Exception e )
+        {
+            throw rollBack( e, plugin );
+        }
+
+        HtmlPageActivationIndex.getInstance( ).remove( htmlpage.getId( ) );
+        HtmlPageWorkgroupIndex.getInstance( ).remove( htmlpage.getId( ) );
+        PublicHtmlPageCacheService.getService( ).invalidateHtmlPage( htmlpage.getId( ) );
+
+        // The bean passed by the caller may be stale : the htmlpage is removed from the index whatever its status
+        String strIdHtmlPage = Integer.toString( htmlpage.getId( ) );
+        IndexationService.addIndexerAction( strIdHtmlPage + "_" + HtmlPageIndexer.SHORT_NAME,
+                AppPropertiesService.getProperty( HtmlPageIndexer.PROPERTY_INDEXER_NAME ), IndexerAction.TASK_DELETE );
+
+        HtmlPageIndexerUtils.addIndexerAction( strIdHtmlPage, IndexerAction.TASK_DELETE );
     }
 
     ///////////////////////////////////////////////////////////////////////////
@@ -162,6 +331,20 @@ public class HtmlPageHome
         return _dao.load( nKey, plugin );
     }
 
+    /**
+     * Returns the htmlpages whose identifiers are specified in parameter, in a single round trip for reasonable lists
+     * 
+     * @param listKeys
+     *            The Primary keys of the htmlpages
+     * @param plugin
+     *            The Plugin object
+     * @return The htmlpages found, by id
+     */
+    public static Map<Integer, HtmlPage> findByPrimaryKeys( Collection<Integer> listKeys, Plugin plugin )
+    {
+        return _dao.selectByIds( listKeys, plugin );
+    }
+
     /**
      * Returns a collection of htmlpages objects
      * 
@@ -174,6 +357,80 @@ public class HtmlPageHome
         return _dao.selectAll( plugin );
     }
 
+    /**
+     * Returns a collection of htmlpages objects without their html content. The content can be loaded afterwards with
+     * {@link #loadHtmlContent(HtmlPage, Plugin)}.
+     * 
+     * @param plugin
+     *            The Plugin object
+     * @return A collection of htmlpages
+     */
+    public static Collection<HtmlPage> findAllSummaries( Plugin plugin )
+    {
+        return _dao.selectAllSummaries( plugin );
+    }
+
+    /**
+     * Returns a page of the htmlpages matching a filter, without their html content
+     * 
+     * @param filter
+     *            The filter
+     * @param plugin
+     *            The Plugin object
+     * @return A list of htmlpages
+     */
+    public static List<HtmlPage> findSummariesByFilter( HtmlPageFilter filter, Plugin plugin )
+    {
+        return _dao.selectSummariesByFilter( filter, plugin );
+    }
+
+    /**
+     * Counts the htmlpages matching a filter
+     * 
+     * @param filter
+     *            The filter
+     * @param plugin
+     *            The Plugin object
+     * @return The number of htmlpages
+     */
+    public static int countByFilter( HtmlPageFilter filter, Plugin plugin )
+    {
+        return _dao.countByFilter( filter, plugin );
+    }
+
+    /**
+     * Checks if a workgroup is used by at least one htmlpage
+     * 
+     * @param strWorkgroupKey
+     *            The workgroup key
+     * @param plugin
+     *            The Plugin object
+     * @return true if a htmlpage belongs to the workgroup
+     */
+    public static boolean isWorkgroupUsed( String strWorkgroupKey, Plugin plugin )
+    {
+        return _dao.checkWorkgroupUsed( strWorkgroupKey, plugin );
+    }
+
+    /**
+     * Loads the html content of a htmlpage returned by {@link #findAllSummaries(Plugin)}
+     * 
+     * @param htmlpage
+     *            The htmlpage
+     * @param plugin
+     *            The Plugin object
+     * @return The htmlpage with its html content
+     */
+    public static HtmlPage loadHtmlContent( HtmlPage htmlpage, Plugin plugin )
+    {
+        if ( htmlpage.getHtmlContent( ) == null )
+        {
+            htmlpage.setHtmlContent( _dao.loadHtmlContent( htmlpage.getId( ), plugin ) );
+        }
+
+        return htmlpage;
+    }
+
     /**
      * Returns htmlpage object with valid status
      * 
@@ -185,7 +442,21 @@ public class HtmlPageHome
      */
     public static HtmlPage findEnabledHtmlPage( int nKey, Plugin plugin )
     {
-        return _dao.selectEnabledHtmlPage( nKey, plugin );
+        return _dao.selectEnabledHtmlPage( nKey, new Timestamp( System.currentTimeMillis( ) ), plugin );
+    }
+
+    /**
+     * Returns the htmlpages with valid status among several ones, in a single database round trip
+     * 
+     * @param listKeys
+     *            The Primary keys of the htmlpages
+     * @param plugin
+     *            The Plugin object
+     * @return The htmlpages with valid status, by id
+     */
+    public static Map<Integer, HtmlPage> findEnabledByPrimaryKeys( Collection<Integer> listKeys, Plugin plugin )
+    {
+        return _dao.selectEnabledByIds( listKeys, new Timestamp( System.currentTimeMillis( ) ), plugin );
     }
 
     /**
@@ -197,6 +468,44 @@ public class HtmlPageHome
      */
     public static Collection<HtmlPage> findEnabledHtmlPageList( Plugin plugin )
     {
-        return _dao.selectEnabledHtmlPageList( plugin );
+        return findEnabledHtmlPageList( new Timestamp( System.currentTimeMillis( ) ), plugin );
+    }
+
+    /**
+     * Returns a collection of htmlpages objects with valid status at a given date
+     * 
+     * @param date
+     *            The date
+     * @param plugin
+     *            The Plugin object
+     * @return A collection of htmlpages
+     */
+    public static Collection<HtmlPage> findEnabledHtmlPageList( Timestamp date, Plugin plugin )
+    {
+        return _dao.selectEnabledHtmlPageList( date, plugin );
+    }
+
+    /**
+     * Returns a collection of htmlpages objects which are enabled, or conditioned and not ended yet
+     * 
+     * @param plugin
+     *            The Plugin object
+     * @return A collection of htmlpages
+     */
+    public static Collection<HtmlPage> findScheduledHtmlPageList( Plugin plugin )
+    {
+        return _dao.selectScheduledHtmlPageList( new Timestamp( System.currentTimeMillis( ) ), plugin );
+    }
+
+    /**
+     * Returns a collection of htmlpages objects which are enabled, or conditioned and not ended yet, without their html content
+     * 
+     * @param plugin
+     *            The Plugin object
+     * @return A collection of htmlpages
+     */
+    public static Collection<HtmlPage> findScheduledHtmlPageSummaryList( Plugin plugin )
+    {
+        return _dao.selectScheduledHtmlPageSummaryList( new Timestamp( System.currentTimeMillis( ) ), plugin );
     }
 }
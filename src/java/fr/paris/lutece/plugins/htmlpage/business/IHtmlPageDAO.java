@@ -35,7 +35,10 @@ package fr.paris.lutece.plugins.htmlpage.business;
 
 import fr.paris.lutece.portal.service.plugin.Plugin;
 
+import java.sql.Timestamp;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 /**
  * htmlPageInterface
@@ -75,16 +78,42 @@ public interface IHtmlPageDAO
      */
     HtmlPage load( int nHtmlPageId, Plugin plugin );
 
+    /**
+     * Load the data of several HtmlPages from the table
+     * 
+     * @param listHtmlPageIds
+     *            The identifiers of the HtmlPages
+     * @param plugin
+     *            The plugin
+     * @return the HtmlPages found, by id
+     */
+    Map<Integer, HtmlPage> selectByIds( Collection<Integer> listHtmlPageIds, Plugin plugin );
+
+    /**
+     * Load the data of several HtmlPages enabled at a given date from the table
+     * 
+     * @param listHtmlPageIds
+     *            The identifiers of the HtmlPages
+     * @param date
+     *            The date at which the HtmlPages must be enabled
+     * @param plugin
+     *            The plugin
+     * @return the enabled HtmlPages found, by id
+     */
+    Map<Integer, HtmlPage> selectEnabledByIds( Collection<Integer> listHtmlPageIds, Timestamp date, Plugin plugin );
+
     /**
      * Load the data of enabled HtmlPage from the table
      * 
      * @param nHtmlPageId
      *            The identifier of HtmlPage
+     * @param date
+     *            The date at which the HtmlPage must be enabled
      * @param plugin
      *            The plugin
      * @return the instance of the HtmlPage
      */
-    HtmlPage selectEnabledHtmlPage( int nHtmlPageId, Plugin plugin );
+    HtmlPage selectEnabledHtmlPage( int nHtmlPageId, Timestamp date, Plugin plugin );
 
     /**
      * Load the list of htmlpages
@@ -96,13 +125,90 @@ public interface IHtmlPageDAO
     Collection<HtmlPage> selectAll( Plugin plugin );
 
     /**
-     * Load the list of htmlpages with valid status
+     * Load the list of htmlpages without their html content
+     * 
+     * @param plugin
+     *            The plugin
+     * @return The Collection of the HtmlPages
+     */
+    Collection<HtmlPage> selectAllSummaries( Plugin plugin );
+
+    /**
+     * Load a page of the list of htmlpages matching a filter, without their html content
+     * 
+     * @param filter
+     *            The filter
+     * @param plugin
+     *            The plugin
+     * @return The list of the HtmlPages
+     */
+    List<HtmlPage> selectSummariesByFilter( HtmlPageFilter filter, Plugin plugin );
+
+    /**
+     * Count the htmlpages matching a filter
+     * 
+     * @param filter
+     *            The filter
+     * @param plugin
+     *            The plugin
+     * @return The number of HtmlPages
+     */
+    int countByFilter( HtmlPageFilter filter, Plugin plugin );
+
+    /**
+     * Check if a workgroup is used by at least one htmlpage
+     * 
+     * @param strWorkgroupKey
+     *            The workgroup key
+     * @param plugin
+     *            The plugin
+     * @return true if a htmlpage belongs to the workgroup
+     */
+    boolean checkWorkgroupUsed( String strWorkgroupKey, Plugin plugin );
+
+    /**
+     * Load the html content of a htmlpage
+     * 
+     * @param nHtmlPageId
+     *            The identifier of HtmlPage
+     * @param plugin
+     *            The plugin
+     * @return the html content, or null if the htmlpage doesn't exist
+     */
+    String loadHtmlContent( int nHtmlPageId, Plugin plugin );
+
+    /**
+     * Load the list of htmlpages enabled at a given date
+     * 
+     * @param date
+     *            The date at which the HtmlPages must be enabled
+     * @param plugin
+     *            The plugin
+     * @return The Collection of the HtmlPages
+     */
+    Collection<HtmlPage> selectEnabledHtmlPageList( Timestamp date, Plugin plugin );
+
+    /**
+     * Load the list of htmlpages which are enabled, or conditioned and not ended at a given date
      * 
+     * @param date
+     *            The date
      * @param plugin
      *            The plugin
      * @return The Collection of the HtmlPages
      */
-    Collection<HtmlPage> selectEnabledHtmlPageList( Plugin plugin );
+    Collection<HtmlPage> selectScheduledHtmlPageList( Timestamp date, Plugin plugin );
+
+    /**
+     * Load the list of htmlpages which are enabled, or conditioned and not ended at a given date, without their html content
+     * 
+     * @param date
+     *            The date
+     * @param plugin
+     *            The plugin
+     * @return The Collection of the HtmlPages
+     */
+    Collection<HtmlPage> selectScheduledHtmlPageSummaryList( Timestamp date, Plugin plugin );
 
     /**
      * Update the record in the table
@@ -113,4 +219,72 @@ public interface IHtmlPageDAO
      *            The plugin
      */
     void store( HtmlPage htmlpage, Plugin plugin );
+
+    /**
+     * Increment the global change counter of the htmlpages. Must be called in a transaction, for the new value to be read atomically.
+     * 
+     * @param plugin
+     *            The plugin
+     * @return the new value of the counter
+     */
+    long incrementChangeCounter( Plugin plugin );
+
+    /**
+     * Load the global change counter of the htmlpages
+     * 
+     * @param plugin
+     *            The plugin
+     * @return the value of the counter
+     */
+    long selectChangeCounter( Plugin plugin );
+
+    /**
+     * Append a change of a htmlpage to the change log
+     * 
+     * @param nHtmlPageId
+     *            The identifier of the htmlpage
+     * @param plugin
+     *            The plugin
+     * @return the identifier of the change
+     */
+    long insertChangeLog( int nHtmlPageId, Plugin plugin );
+
+    /**
+     * Load the changes of the change log following a given one
+     * 
+     * @param lIdChange
+     *            The identifier of the last known change
+     * @param plugin
+     *            The plugin
+     * @return the ids of the changed htmlpages by change identifier, in the order of the changes
+     */
+    Map<Long, Integer> selectChangeLog( long lIdChange, Plugin plugin );
+
+    /**
+     * Load the identifier of the last change of the change log
+     * 
+     * @param plugin
+     *            The plugin
+     * @return the identifier, 0 if the change log is empty
+     */
+    long selectLastChangeLogId( Plugin plugin );
+
+    /**
+     * Load the identifier of the first change kept in the change log
+     * 
+     * @param plugin
+     *            The plugin
+     * @return the identifier, 0 if the change log is empty
+     */
+    long selectFirstChangeLogId( Plugin plugin );
+
+    /**
+     * Delete the changes of the change log older than a given date
+     * 
+     * @param date
+     *            The date
+     * @param plugin
+     *            The plugin
+     */
+    void deleteChangeLog( Timestamp date, Plugin plugin );
 }
@@ -0,0 +1,407 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.htmlpage.rs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+
+import fr.paris.lutece.plugins.htmlpage.business.HtmlPage;
+import fr.paris.lutece.plugins.htmlpage.service.EnumStatus;
+import fr.paris.lutece.plugins.htmlpage.service.HtmlPageService;
+import fr.paris.lutece.plugins.htmlpage.service.HtmlPageSnapshot;
+import fr.paris.lutece.plugins.htmlpage.service.PublicHtmlPageCacheService;
+import fr.paris.lutece.plugins.htmlpage.utils.HtmlPageUtil;
+import fr.paris.lutece.plugins.htmlpage.utils.HtmlPageVisibilityContext;
+import fr.paris.lutece.plugins.rest.service.RestConstants;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import fr.paris.lutece.util.json.ErrorJsonResponse;
+import fr.paris.lutece.util.json.JsonResponse;
+import fr.paris.lutece.util.json.JsonUtil;
+
+/**
+ * HtmlPageRest : serves the html content of the published htmlpages to the getHtmlPage macro, one by one or in batch. The responses carry an ETag computed from the content and
+ * the Last-Modified date of the returned htmlpages, so that browsers and proxies can revalidate them.
+ */
+@Path( RestConstants.BASE_PATH + Constants.API_PATH + Constants.VERSION_PATH + Constants.HTMLPAGE_PATH )
+public class HtmlPageRest
+{
+    // Properties
+    private static final String PROPERTY_MAX_AGE = "htmlpage.rest.cache.maxAge";
+    private static final String PROPERTY_BATCH_MAX_SIZE = "htmlpage.rest.batch.maxSize";
+
+    // Entity tags
+    private static final String ENTITY_TAG_SEPARATOR = "-";
+    private static final String ENTITY_TAG_MISSING = "none";
+    private static final String ENTITY_TAG_VERSION = "v";
+
+    /**
+     * Get the html content of a htmlpage
+     * 
+     * @param nVersion
+     *            the API version
+     * @param strId
+     *            the htmlpage id
+     * @param strIdDefault
+     *            the id of the htmlpage returned if the first one is not published or not visible for the user
+     * @param request
+     *            the HTTP request
+     * @param requestContext
+     *            the JAX-RS request, used to evaluate the preconditions
+     * @return the response
+     */
+    @GET
+    @Path( Constants.ID_PATH )
+    @Produces( MediaType.APPLICATION_JSON )
+    public Response getHtmlPage( @PathParam( Constants.VERSION ) Integer nVersion, @PathParam( Constants.ID ) String strId,
+            @QueryParam( Constants.PARAMETER_ID_DEFAULT ) String strIdDefault, @Context HttpServletRequest request, @Context Request requestContext )
+    {
+        if ( !Constants.VERSION_1.equals( String.valueOf( nVersion ) ) )
+        {
+            AppLogService.error( "{} : {}", Constants.ERROR_NOT_FOUND_VERSION, nVersion );
+
+            return buildErrorResponse( Response.Status.NOT_FOUND, Constants.ERROR_NOT_FOUND_VERSION );
+        }
+
+        HtmlPageService service = HtmlPageService.getInstance( );
+        HtmlPage htmlPageRequested = getHtmlPage( service, strId );
+        HtmlPage htmlPage = getVisibleHtmlPage( htmlPageRequested, request );
+
+        if ( htmlPage == null )
+        {
+            htmlPage = getVisibleHtmlPage( getHtmlPage( service, strIdDefault ), request );
+        }
+
+        if ( htmlPage == null )
+        {
+            return buildErrorResponse( Response.Status.NOT_FOUND, Constants.ERROR_NOT_FOUND_RESOURCE );
+        }
+
+        String strContent = service.getHtmlContent( htmlPage );
+        boolean bPrivate = isRestricted( htmlPageRequested ) || HtmlPageUtil.isRoleExist( htmlPage.getRole( ) );
+
+        return buildResponse( strContent, getEntityTag( htmlPage, strContent ), bPrivate, getLastModified( htmlPage, 0L ), requestContext );
+    }
+
+    /**
+     * Get the html contents of several htmlpages in a single response. The result is a list holding the html content of each requested htmlpage, or of
+     * its default htmlpage, in the order of the request. It holds null for the htmlpages which are not found.
+     * 
+     * @param nVersion
+     *            the API version
+     * @param listIds
+     *            the htmlpage ids
+     * @param listIdDefaults
+     *            the ids of the default htmlpages, in the same order as the ids (empty values for the htmlpages without default)
+     * @param request
+     *            the HTTP request
+     * @param requestContext
+     *            the JAX-RS request, used to evaluate the preconditions
+     * @return the response
+     */
+    @GET
+    @Produces( MediaType.APPLICATION_JSON )
+    public Response getHtmlPages( @PathParam( Constants.VERSION ) Integer nVersion, @QueryParam( Constants.PARAMETER_ID ) List<String> listIds,
+            @QueryParam( Constants.PARAMETER_ID_DEFAULT ) List<String> listIdDefaults, @Context HttpServletRequest request, @Context Request requestContext )
+    {
+        if ( !Constants.VERSION_1.equals( String.valueOf( nVersion ) ) )
+        {
+            AppLogService.error( "{} : {}", Constants.ERROR_NOT_FOUND_VERSION, nVersion );
+
+            return buildErrorResponse( Response.Status.NOT_FOUND, Constants.ERROR_NOT_FOUND_VERSION );
+        }
+
+        if ( listIds.isEmpty( ) || listIds.size( ) > AppPropertiesService.getPropertyInt( PROPERTY_BATCH_MAX_SIZE, 50 ) )
+        {
+            return buildErrorResponse( Response.Status.BAD_REQUEST, Constants.ERROR_BAD_REQUEST );
+        }
+
+        HtmlPageService service = HtmlPageService.getInstance( );
+        Map<Integer, HtmlPage> mapHtmlPages = service.getHtmlPagesCache( getIds( listIds, listIdDefaults ) );
+        List<String> listContents = new ArrayList<>( listIds.size( ) );
+        StringBuilder sbEntityTags = new StringBuilder( );
+        boolean bPrivate = false;
+        long lLastModified = 0L;
+
+        for ( int i = 0; i < listIds.size( ); i++ )
+        {
+            HtmlPage htmlPageRequested = mapHtmlPages.get( NumberUtils.toInt( listIds.get( i ), -1 ) );
+            HtmlPage htmlPage = getVisibleHtmlPage( htmlPageRequested, request );
+            bPrivate |= isRestricted( htmlPageRequested );
+
+            if ( htmlPage == null && i < listIdDefaults.size( ) )
+            {
+                htmlPage = getVisibleHtmlPage( mapHtmlPages.get( NumberUtils.toInt( listIdDefaults.get( i ), -1 ) ), request );
+            }
+
+            if ( htmlPage == null )
+            {
+                listContents.add( null );
+                sbEntityTags.append( ENTITY_TAG_MISSING );
+            }
+            else
+            {
+                String strContent = service.getHtmlContent( htmlPage );
+                listContents.add( strContent );
+                sbEntityTags.append( getEntityTag( htmlPage, strContent ) );
+                bPrivate |= HtmlPageUtil.isRoleExist( htmlPage.getRole( ) );
+                lLastModified = getLastModified( htmlPage, lLastModified );
+            }
+
+            sbEntityTags.append( ENTITY_TAG_SEPARATOR );
+        }
+
+        String strEntityTag = listIds.size( ) + ENTITY_TAG_SEPARATOR + DigestUtils.sha256Hex( sbEntityTags.toString( ) );
+
+        return buildResponse( listContents, strEntityTag, bPrivate, lLastModified, requestContext );
+    }
+
+    /**
+     * Get the valid ids among the requested ids and the ids of their default htmlpages
+     * 
+     * @param listIds
+     *            the htmlpage ids
+     * @param listIdDefaults
+     *            the ids of the default htmlpages
+     * @return the valid ids
+     */
+    private static Set<Integer> getIds( List<String> listIds, List<String> listIdDefaults )
+    {
+        Set<Integer> setIds = new HashSet<>( );
+
+        for ( List<String> list : Arrays.asList( listIds, listIdDefaults ) )
+        {
+            for ( String strId : list )
+            {
+                int nId = NumberUtils.toInt( strId, -1 );
+
+                if ( nId >= 0 )
+                {
+                    setIds.add( nId );
+                }
+            }
+        }
+
+        return setIds;
+    }
+
+    /**
+     * Builds a response, or a 304 response if the client already holds the same result
+     * 
+     * @param result
+     *            the result
+     * @param strEntityTag
+     *            the entity tag of the result
+     * @param bPrivate
+     *            true if the result depends on the roles of the user
+     * @param lLastModified
+     *            the last modification time of the returned htmlpages, or 0 if it is unknown
+     * @param requestContext
+     *            the JAX-RS request, used to evaluate the preconditions
+     * @return the response
+     */
+    private static Response buildResponse( Object result, String strEntityTag, boolean bPrivate, long lLastModified, Request requestContext )
+    {
+        // Without cache, or while it is rebuilt, there is no snapshot : the result is dated now and not cached
+        HtmlPageSnapshot snapshot = PublicHtmlPageCacheService.getService( ).getSnapshot( );
+        EntityTag etag = new EntityTag( strEntityTag );
+        long lSnapshotTime = ( snapshot != null ) ? snapshot.getCreationTime( ) : System.currentTimeMillis( );
+        Date dateLastModified = new Date( ( ( lLastModified > 0 ) ? lLastModified : lSnapshotTime ) / 1000 * 1000 );
+
+        Response.ResponseBuilder builder = requestContext.evaluatePreconditions( dateLastModified, etag );
+
+        if ( builder == null )
+        {
+            builder = Response.ok( JsonUtil.buildJsonResponse( new JsonResponse( result ) ) );
+        }
+
+        return builder.tag( etag ).lastModified( dateLastModified ).cacheControl( getCacheControl( bPrivate, snapshot ) ).build( );
+    }
+
+    /**
+     * Get a published htmlpage
+     * 
+     * @param service
+     *            the htmlpage service
+     * @param strId
+     *            the htmlpage id
+     * @return the htmlpage, or null if the id is invalid or if the htmlpage is not published
+     */
+    private static HtmlPage getHtmlPage( HtmlPageService service, String strId )
+    {
+        int nId = NumberUtils.toInt( strId, -1 );
+
+        return ( nId < 0 ) ? null : service.getHtmlPageCache( nId );
+    }
+
+    /**
+     * Get a published htmlpage if it is visible for the user
+     * 
+     * @param htmlPage
+     *            the published htmlpage, or null
+     * @param request
+     *            the HTTP request
+     * @return the htmlpage, or null if it is null or not visible
+     */
+    private static HtmlPage getVisibleHtmlPage( HtmlPage htmlPage, HttpServletRequest request )
+    {
+        if ( htmlPage != null && !HtmlPageVisibilityContext.getContext( request ).isVisible( htmlPage.getRole( ) ) )
+        {
+            return null;
+        }
+
+        return htmlPage;
+    }
+
+    /**
+     * Checks if a requested htmlpage is restricted to a role. The response then depends on the user, even if it holds the default htmlpage.
+     * 
+     * @param htmlPage
+     *            the requested htmlpage, or null if it is not published
+     * @return true if the htmlpage is published and restricted to a role
+     */
+    private static boolean isRestricted( HtmlPage htmlPage )
+    {
+        return htmlPage != null && HtmlPageUtil.isRoleExist( htmlPage.getRole( ) );
+    }
+
+    /**
+     * Get the last modification time of the returned htmlpages. A conditioned htmlpage is modified for the readers when it is activated.
+     * 
+     * @param htmlPage
+     *            a returned htmlpage
+     * @param lLastModified
+     *            the last modification time of the other returned htmlpages, or 0
+     * @return the latest of the modification time of the htmlpage and of the given time
+     */
+    private static long getLastModified( HtmlPage htmlPage, long lLastModified )
+    {
+        long lModified = lLastModified;
+
+        if ( htmlPage.getDateUpdate( ) != null )
+        {
+            lModified = Math.max( lModified, htmlPage.getDateUpdate( ).getTime( ) );
+        }
+
+        if ( htmlPage.getStatus( ) == EnumStatus.conditioned.getId( ) && htmlPage.getDateStart( ) != null )
+        {
+            lModified = Math.max( lModified, htmlPage.getDateStart( ).getTime( ) );
+        }
+
+        return lModified;
+    }
+
+    /**
+     * Computes the entity tag of a htmlpage from its id and version, or from the digest of its content if it has not been modified since the versions
+     * are recorded
+     * 
+     * @param htmlPage
+     *            the htmlpage
+     * @param strContent
+     *            the html content
+     * @return the entity tag value
+     */
+    private static String getEntityTag( HtmlPage htmlPage, String strContent )
+    {
+        if ( htmlPage.getVersion( ) > 0 )
+        {
+            return htmlPage.getId( ) + ENTITY_TAG_SEPARATOR + ENTITY_TAG_VERSION + htmlPage.getVersion( );
+        }
+
+        return htmlPage.getId( ) + ENTITY_TAG_SEPARATOR + DigestUtils.sha256Hex( strContent );
+    }
+
+    /**
+     * Builds the cache directives : the responses depending on the roles of the user can only be cached by the browser, and no response is cached
+     * after the next activation change
+     * 
+     * @param bPrivate
+     *            true if the response depends on the roles of the user
+     * @param snapshot
+     *            the snapshot of the published htmlpages, or null if there is none
+     * @return the cache directives
+     */
+    private static CacheControl getCacheControl( boolean bPrivate, HtmlPageSnapshot snapshot )
+    {
+        long lMaxAge = AppPropertiesService.getPropertyInt( PROPERTY_MAX_AGE, 60 );
+        long lValidity = ( snapshot != null ) ? ( snapshot.getValidUntil( ) - System.currentTimeMillis( ) ) / 1000 : 0L;
+
+        CacheControl cacheControl = new CacheControl( );
+        cacheControl.setMaxAge( (int) Math.max( 0, Math.min( lMaxAge, lValidity ) ) );
+        cacheControl.setPrivate( bPrivate );
+        cacheControl.setNoTransform( false );
+
+        return cacheControl;
+    }
+
+    /**
+     * Builds an error response, never cached
+     * 
+     * @param status
+     *            the HTTP status
+     * @param strMessage
+     *            the error message
+     * @return the response
+     */
+    private static Response buildErrorResponse( Response.Status status, String strMessage )
+    {
+        CacheControl cacheControl = new CacheControl( );
+        cacheControl.setNoCache( true );
+        cacheControl.setNoTransform( false );
+
+        return Response.status( status ).entity( JsonUtil.buildJsonResponse( new ErrorJsonResponse( status.name( ), strMessage ) ) ).cacheControl( cacheControl )
+                .build( );
+    }
+}
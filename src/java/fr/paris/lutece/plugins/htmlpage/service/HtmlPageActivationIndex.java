@@ -0,0 +1,492 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.htmlpage.service;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.commons.lang3.StringUtils;
+
+import fr.paris.lutece.plugins.htmlpage.business.HtmlPage;
+import fr.paris.lutece.plugins.htmlpage.business.HtmlPageHome;
+import fr.paris.lutece.plugins.htmlpage.utils.HtmlPageUtil;
+
+/**
+ *
+ * HtmlPageActivationIndex : in-memory index of the activation windows of the htmlpages. The index holds the conditioned htmlpages active at its current
+ * time, and the dates after it at which a conditioned htmlpage starts or ends. Each date only holds the ids which start or end at it, and the dates are
+ * applied and dropped as the time passes, so that the index stays proportional to the number of htmlpages. The index can't tell which htmlpages were
+ * active before its current time.
+ *
+ */
+public final class HtmlPageActivationIndex
+{
+    private static final HtmlPageActivationIndex _singleton = new HtmlPageActivationIndex( );
+
+    /**
+     * Same order as the htmlpage lists loaded by the DAO : description, compared like the case and accent insensitive collations of the database,
+     * then id descending. Only used under the lock of the index since a collator is not thread safe.
+     */
+    private final Comparator<HtmlPage> _comparator = Comparator.comparing( HtmlPage::getDescription, Comparator.nullsFirst( getCollator( ) ) )
+            .thenComparing( Comparator.comparingInt( HtmlPage::getId ).reversed( ) );
+
+    private boolean _bLoaded;
+    private long _lTime;
+    private final Map<Integer, HtmlPage> _mapHtmlPages = new HashMap<>( );
+    private final Set<Integer> _setAlwaysActive = new HashSet<>( );
+    private final Set<Integer> _setActive = new HashSet<>( );
+    private final TreeMap<Long, Boundary> _mapBoundaries = new TreeMap<>( );
+    private final Map<String, String> _mapKeys = new HashMap<>( );
+    private volatile ActiveList _activeList;
+
+    /**
+     * Private constructor
+     */
+    private HtmlPageActivationIndex( )
+    {
+    }
+
+    /**
+     * Get the instance of this index
+     *
+     * @return the instance of this index
+     */
+    public static HtmlPageActivationIndex getInstance( )
+    {
+        return _singleton;
+    }
+
+    /**
+     * Gets the htmlpages active at the given time. The sorted list of the active htmlpages is kept until the next activation date or the next change,
+     * and is returned without locking in between.
+     *
+     * @param lTime
+     *            the time in milliseconds
+     * @return the unmodifiable list of the active htmlpages, ordered by description, or null if the time is before the current time of the index
+     */
+    public List<HtmlPage> getActiveHtmlPages( long lTime )
+    {
+        ActiveList activeList = _activeList;
+
+        if ( activeList != null && activeList.isValid( lTime ) )
+        {
+            return activeList._listHtmlPages;
+        }
+
+        return buildActiveHtmlPages( lTime );
+    }
+
+    /**
+     * Gets the htmlpages active at the given time, and keeps them if the time is not after the next activation date
+     *
+     * @param lTime
+     *            the time in milliseconds
+     * @return the unmodifiable list of the active htmlpages, ordered by description, or null if the time is before the current time of the index
+     */
+    private synchronized List<HtmlPage> buildActiveHtmlPages( long lTime )
+    {
+        load( );
+        advance( Math.min( lTime, System.currentTimeMillis( ) ) );
+
+        if ( lTime < _lTime )
+        {
+            return null;
+        }
+
+        Map<Long, Boundary> mapBoundaries = _mapBoundaries.headMap( lTime, true );
+
+        if ( !mapBoundaries.isEmpty( ) )
+        {
+            // A future time after some activation dates : the list is only built for this call
+            Set<Integer> setActive = new HashSet<>( _setActive );
+
+            for ( Boundary boundary : mapBoundaries.values( ) )
+            {
+                setActive.removeAll( boundary._setEnding );
+                setActive.addAll( boundary._setStarting );
+            }
+
+            return getSortedHtmlPages( setActive );
+        }
+
+        ActiveList activeList = _activeList;
+
+        if ( activeList == null )
+        {
+            Long lNextChange = _mapBoundaries.isEmpty( ) ? null : _mapBoundaries.firstKey( );
+            activeList = new ActiveList( getSortedHtmlPages( _setActive ), _lTime, ( lNextChange == null ) ? Long.MAX_VALUE : lNextChange );
+            _activeList = activeList;
+        }
+
+        return activeList._listHtmlPages;
+    }
+
+    /**
+     * Gets the htmlpages always active and the given conditioned htmlpages
+     *
+     * @param setActive
+     *            the ids of the active conditioned htmlpages
+     * @return the unmodifiable list of the htmlpages, ordered by description
+     */
+    private List<HtmlPage> getSortedHtmlPages( Set<Integer> setActive )
+    {
+        List<HtmlPage> listHtmlPages = new ArrayList<>( _setAlwaysActive.size( ) + setActive.size( ) );
+
+        for ( Integer nId : _setAlwaysActive )
+        {
+            listHtmlPages.add( _mapHtmlPages.get( nId ) );
+        }
+
+        for ( Integer nId : setActive )
+        {
+            listHtmlPages.add( _mapHtmlPages.get( nId ) );
+        }
+
+        listHtmlPages.sort( _comparator );
+
+        return Collections.unmodifiableList( listHtmlPages );
+    }
+
+    /**
+     * Gets the first time after the given one at which the activation of a htmlpage changes
+     *
+     * @param lTime
+     *            the time in milliseconds
+     * @return the time in milliseconds of the next activation change, Long.MAX_VALUE if no activation changes after the given time
+     */
+    public synchronized long getNextActivationChange( long lTime )
+    {
+        load( );
+        advance( System.currentTimeMillis( ) );
+
+        Long lNextChange = _mapBoundaries.higherKey( lTime );
+
+        return ( lNextChange == null ) ? Long.MAX_VALUE : lNextChange;
+    }
+
+    /**
+     * Adds or replaces a htmlpage in the index. Nothing is done until the index is loaded.
+     *
+     * @param htmlPage
+     *            the htmlpage
+     */
+    public synchronized void put( HtmlPage htmlPage )
+    {
+        if ( !_bLoaded )
+        {
+            return;
+        }
+
+        remove( htmlPage.getId( ) );
+        add( htmlPage );
+        _activeList = null;
+    }
+
+    /**
+     * Removes a htmlpage from the index. Nothing is done until the index is loaded.
+     *
+     * @param nId
+     *            the htmlpage id
+     */
+    public synchronized void remove( int nId )
+    {
+        HtmlPage htmlPage = _mapHtmlPages.remove( nId );
+
+        if ( htmlPage == null )
+        {
+            return;
+        }
+
+        _activeList = null;
+
+        if ( _setAlwaysActive.remove( nId ) )
+        {
+            return;
+        }
+
+        _setActive.remove( nId );
+        removeFromBoundary( getStart( htmlPage ), nId );
+        removeFromBoundary( getEnd( htmlPage ), nId );
+    }
+
+    /**
+     * Clears the index. It will be loaded again from the database on next use.
+     */
+    public synchronized void reset( )
+    {
+        _mapHtmlPages.clear( );
+        _setAlwaysActive.clear( );
+        _setActive.clear( );
+        _mapBoundaries.clear( );
+        _mapKeys.clear( );
+        _activeList = null;
+        _bLoaded = false;
+    }
+
+    /**
+     * Loads all the htmlpages in the index if it is not done yet
+     */
+    private void load( )
+    {
+        if ( !_bLoaded )
+        {
+            // Disabled and ended htmlpages can't be active anymore and are not loaded
+            _lTime = System.currentTimeMillis( );
+
+            Collection<HtmlPage> listHtmlPages = HtmlPageContentCache.getInstance( ).isEnabled( )
+                    ? HtmlPageHome.findScheduledHtmlPageSummaryList( HtmlPagePlugin.getPlugin( ) )
+                    : HtmlPageHome.findScheduledHtmlPageList( HtmlPagePlugin.getPlugin( ) );
+
+            for ( HtmlPage htmlPage : listHtmlPages )
+            {
+                add( htmlPage );
+            }
+
+            _bLoaded = true;
+        }
+    }
+
+    /**
+     * Moves the current time of the index forward, applying and dropping the dates which are reached. The htmlpages which end are dropped.
+     *
+     * @param lTime
+     *            the new current time in milliseconds
+     */
+    private void advance( long lTime )
+    {
+        Iterator<Map.Entry<Long, Boundary>> iterator = _mapBoundaries.headMap( lTime, true ).entrySet( ).iterator( );
+
+        while ( iterator.hasNext( ) )
+        {
+            Boundary boundary = iterator.next( ).getValue( );
+
+            for ( Integer nId : boundary._setEnding )
+            {
+                _setActive.remove( nId );
+                _mapHtmlPages.remove( nId );
+            }
+
+            _setActive.addAll( boundary._setStarting );
+            iterator.remove( );
+            _activeList = null;
+        }
+
+        _lTime = Math.max( _lTime, lTime );
+    }
+
+    /**
+     * Adds a htmlpage which is not in the index. The index keeps its own copy of the htmlpage, without the html content if the contents have their own
+     * cache.
+     *
+     * @param htmlPage
+     *            the htmlpage
+     */
+    private void add( HtmlPage htmlPage )
+    {
+        int nId = htmlPage.getId( );
+        HtmlPage copy = HtmlPageUtil.getSummary( htmlPage );
+
+        if ( !HtmlPageContentCache.getInstance( ).isEnabled( ) )
+        {
+            // A NULL content is kept as an empty one, so that it is not loaded again on each read
+            copy.setHtmlContent( StringUtils.defaultString( htmlPage.getHtmlContent( ) ) );
+        }
+
+        // The few distinct roles and workgroups are shared by all the htmlpages
+        copy.setRole( getKey( copy.getRole( ) ) );
+        copy.setWorkgroup( getKey( copy.getWorkgroup( ) ) );
+
+        if ( copy.getStatus( ) == EnumStatus.enabled.getId( ) )
+        {
+            _mapHtmlPages.put( nId, copy );
+            _setAlwaysActive.add( nId );
+        }
+        else
+            if ( copy.getStatus( ) == EnumStatus.conditioned.getId( ) && copy.getDateStart( ) != null )
+            {
+                long lStart = getStart( copy );
+                long lEnd = getEnd( copy );
+
+                if ( lStart < lEnd && lEnd > _lTime )
+                {
+                    _mapHtmlPages.put( nId, copy );
+
+                    if ( lStart <= _lTime )
+                    {
+                        _setActive.add( nId );
+                    }
+                    else
+                    {
+                        _mapBoundaries.computeIfAbsent( lStart, lKey -> new Boundary( ) )._setStarting.add( nId );
+                    }
+
+                    if ( lEnd != Long.MAX_VALUE )
+                    {
+                        _mapBoundaries.computeIfAbsent( lEnd, lKey -> new Boundary( ) )._setEnding.add( nId );
+                    }
+                }
+            }
+    }
+
+    /**
+     * Removes a htmlpage from the ids starting or ending at a date, and drops the date if no other htmlpage starts or ends at it
+     *
+     * @param lTime
+     *            the date in milliseconds
+     * @param nId
+     *            the htmlpage id
+     */
+    private void removeFromBoundary( long lTime, int nId )
+    {
+        Boundary boundary = _mapBoundaries.get( lTime );
+
+        if ( boundary != null )
+        {
+            boundary._setStarting.remove( nId );
+            boundary._setEnding.remove( nId );
+
+            if ( boundary._setStarting.isEmpty( ) && boundary._setEnding.isEmpty( ) )
+            {
+                _mapBoundaries.remove( lTime );
+            }
+        }
+    }
+
+    /**
+     * Gets the shared instance of a role or workgroup key
+     *
+     * @param strKey
+     *            the key
+     * @return the shared instance equal to the key
+     */
+    private String getKey( String strKey )
+    {
+        return ( strKey == null ) ? null : _mapKeys.computeIfAbsent( strKey, strNewKey -> strNewKey );
+    }
+
+    /**
+     * A conditioned htmlpage is active strictly after its start date
+     *
+     * @param htmlPage
+     *            the htmlpage
+     * @return the first time in milliseconds at which the htmlpage is active
+     */
+    private static long getStart( HtmlPage htmlPage )
+    {
+        return htmlPage.getDateStart( ).getTime( ) + 1;
+    }
+
+    /**
+     * A conditioned htmlpage is active strictly before its end date
+     *
+     * @param htmlPage
+     *            the htmlpage
+     * @return the first time in milliseconds at which the htmlpage is no longer active
+     */
+    private static long getEnd( HtmlPage htmlPage )
+    {
+        return ( htmlPage.getDateEnd( ) == null ) ? Long.MAX_VALUE : htmlPage.getDateEnd( ).getTime( );
+    }
+
+    /**
+     * Gets a collator comparing the descriptions like the case and accent insensitive collations of the database
+     *
+     * @return the collator
+     */
+    private static Collator getCollator( )
+    {
+        Collator collator = Collator.getInstance( );
+        collator.setStrength( Collator.PRIMARY );
+
+        return collator;
+    }
+
+    /**
+     * Sorted list of the htmlpages active from the current time of the index until the next activation date
+     */
+    private static final class ActiveList
+    {
+        private final List<HtmlPage> _listHtmlPages;
+        private final long _lFrom;
+        private final long _lUntil;
+
+        /**
+         * Constructor
+         *
+         * @param listHtmlPages
+         *            the active htmlpages
+         * @param lFrom
+         *            the current time of the index
+         * @param lUntil
+         *            the next activation date, Long.MAX_VALUE if there is none
+         */
+        private ActiveList( List<HtmlPage> listHtmlPages, long lFrom, long lUntil )
+        {
+            _listHtmlPages = listHtmlPages;
+            _lFrom = lFrom;
+            _lUntil = lUntil;
+        }
+
+        /**
+         * Checks if the list holds the htmlpages active at a time
+         *
+         * @param lTime
+         *            the time in milliseconds
+         * @return true if the time is between the current time of the index and the next activation date
+         */
+        private boolean isValid( long lTime )
+        {
+            return lTime >= _lFrom && lTime < _lUntil;
+        }
+    }
+
+    /**
+     * Ids of the conditioned htmlpages which start and end at a date
+     */
+    private static final class Boundary
+    {
+        private final Set<Integer> _setStarting = new HashSet<>( );
+        private final Set<Integer> _setEnding = new HashSet<>( );
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.htmlpage.service;
+
+import java.sql.Timestamp;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import fr.paris.lutece.plugins.htmlpage.business.HtmlPage;
+import fr.paris.lutece.plugins.htmlpage.business.HtmlPageHome;
+import fr.paris.lutece.portal.service.init.ShutdownService;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ *
+ * HtmlPageChangeLogPoller : keeps the in-memory data of the htmlpages coherent between the nodes of a cluster. Every creation, modification and removal
+ * of a htmlpage is appended to the htmlpage_changelog table, which each node polls for the changes it has not read yet. The changed htmlpages are
+ * reloaded in the indexes and dropped from the caches.
+ *
+ * A change gets its identifier when it is inserted but is only visible once its transaction is committed, possibly after changes with greater
+ * identifiers. Each poll therefore reads again the last htmlpage.changelog.overlap identifiers and skips the changes already read, as well as the
+ * changes written by this node, which are already applied. The identifiers may have holes, left by rolled back transactions for instance : unread
+ * changes can only have been purged if the node has not polled the change log for half the retention, in which case all the in-memory data is
+ * reloaded.
+ *
+ */
+public final class HtmlPageChangeLogPoller
+{
+    private static final String THREAD_NAME = "htmlpage-changelog-poller";
+
+    // Properties
+    private static final String PROPERTY_ENABLED = "htmlpage.changelog.enabled";
+    private static final String PROPERTY_POLL_INTERVAL = "htmlpage.changelog.pollInterval";
+    private static final String PROPERTY_RETENTION = "htmlpage.changelog.retention";
+    private static final String PROPERTY_OVERLAP = "htmlpage.changelog.overlap";
+
+    private static final HtmlPageChangeLogPoller _singleton = new HtmlPageChangeLogPoller( );
+
+    private ScheduledExecutorService _executor;
+    private final TreeSet<Long> _setReadIdChanges = new TreeSet<>( );
+    private long _lLastIdChange;
+    private long _lOverlap;
+    private long _lLastPurge;
+    private long _lLastPoll;
+    private final Set<Long> _setLocalIdChanges = ConcurrentHashMap.newKeySet( );
+
+    /**
+     * Private constructor
+     */
+    private HtmlPageChangeLogPoller( )
+    {
+    }
+
+    /**
+     * Get the instance of this poller
+     *
+     * @return the instance of this poller
+     */
+    public static HtmlPageChangeLogPoller getInstance( )
+    {
+        return _singleton;
+    }
+
+    /**
+     * Checks if the changes are logged and polled
+     *
+     * @return true if htmlpage.changelog.enabled is true
+     */
+    public static boolean isEnabled( )
+    {
+        return AppPropertiesService.getPropertyBoolean( PROPERTY_ENABLED, false );
+    }
+
+    /**
+     * Starts polling the change log, if it is enabled. The changes logged before are ignored, the caches being empty at startup. The polling is stopped
+     * with the webapp.
+     */
+    public synchronized void start( )
+    {
+        if ( !isEnabled( ) || _executor != null )
+        {
+            return;
+        }
+
+        init( HtmlPagePlugin.getPlugin( ) );
+
+        long lInterval = Math.max( 100, AppPropertiesService.getPropertyInt( PROPERTY_POLL_INTERVAL, 1000 ) );
+        _executor = Executors.newSingleThreadScheduledExecutor( runnable -> {
+            Thread thread = new Thread( runnable, THREAD_NAME );
+            thread.setDaemon( true );
+            return thread;
+        } );
+        _executor.scheduleWithFixedDelay( this::poll, lInterval, lInterval, TimeUnit.MILLISECONDS );
+        ShutdownService.getInstance( ).registerShutdownJob( this::stop );
+    }
+
+    /**
+     * Stops polling the change log
+     */
+    public synchronized void stop( )
+    {
+        if ( _executor != null )
+        {
+            _executor.shutdownNow( );
+            _executor = null;
+        }
+    }
+
+    /**
+     * Marks the changes already logged as read
+     *
+     * @param plugin
+     *            the plugin
+     */
+    void init( Plugin plugin )
+    {
+        _lOverlap = Math.max( 0, AppPropertiesService.getPropertyInt( PROPERTY_OVERLAP, 100 ) );
+        _lLastIdChange = HtmlPageHome.getLastChangeLogId( plugin );
+        _setReadIdChanges.clear( );
+        _setReadIdChanges.addAll( HtmlPageHome.findChangeLog( _lLastIdChange - _lOverlap, plugin ).keySet( ) );
+        _setLocalIdChanges.clear( );
+        _lLastPurge = System.currentTimeMillis( );
+        _lLastPoll = _lLastPurge;
+    }
+
+    /**
+     * Records a change written by this node, so that the poller doesn't apply it again
+     *
+     * @param lIdChange
+     *            the identifier of the change
+     */
+    public void addLocalChange( long lIdChange )
+    {
+        if ( lIdChange > 0 )
+        {
+            _setLocalIdChanges.add( lIdChange );
+        }
+    }
+
+    /**
+     * Reads the changes of the change log not read yet and applies them to the in-memory data of this node
+     */
+    void poll( )
+    {
+        poll( System.currentTimeMillis( ) );
+    }
+
+    /**
+     * Reads the changes of the change log not read yet and applies them to the in-memory data of this node
+     *
+     * @param lNow
+     *            the current time in milliseconds
+     */
+    void poll( long lNow )
+    {
+        try
+        {
+            Plugin plugin = HtmlPagePlugin.getPlugin( );
+
+            if ( isPurged( lNow, plugin ) )
+            {
+                // The changes following the last one read may have been purged, by a node whose clock is ahead for instance
+                AppLogService.info( "Unread htmlpage changes may have been purged, the htmlpage caches are reset" );
+                init( plugin );
+                HtmlPageWorkgroupIndex.getInstance( ).reset( );
+                PublicHtmlPageCacheService.getService( ).resetCache( );
+
+                return;
+            }
+
+            Set<Long> setNewIdChanges = new HashSet<>( );
+            Set<Integer> setChangedIds = new HashSet<>( );
+
+            for ( Map.Entry<Long, Integer> change : HtmlPageHome.findChangeLog( _lLastIdChange - _lOverlap, plugin ).entrySet( ) )
+            {
+                if ( !_setReadIdChanges.contains( change.getKey( ) ) && setNewIdChanges.add( change.getKey( ) )
+                        && !_setLocalIdChanges.remove( change.getKey( ) ) )
+                {
+                    setChangedIds.add( change.getValue( ) );
+                }
+            }
+
+            for ( Integer nId : setChangedIds )
+            {
+                reload( nId, plugin );
+            }
+
+            if ( !setChangedIds.isEmpty( ) )
+            {
+                PublicHtmlPageCacheService.getService( ).invalidateSnapshot( );
+            }
+
+            if ( !setNewIdChanges.isEmpty( ) )
+            {
+                _setReadIdChanges.addAll( setNewIdChanges );
+                _lLastIdChange = Math.max( _lLastIdChange, _setReadIdChanges.last( ) );
+                _setReadIdChanges.headSet( _lLastIdChange - _lOverlap, true ).clear( );
+
+                // The changes of the transactions of this node which have been rolled back are never read
+                long lOldestIdChange = _lLastIdChange - _lOverlap;
+                _setLocalIdChanges.removeIf( lIdChange -> lIdChange <= lOldestIdChange );
+            }
+
+            _lLastPoll = lNow;
+            purge( lNow, plugin );
+        }
+        catch( RuntimeException e )
+        {
+            // The changes will be read again by the next poll
+            AppLogService.error( "Unable to poll the htmlpage change log", e );
+        }
+    }
+
+    /**
+     * Reloads a changed htmlpage in the indexes and drops its cached data
+     *
+     * @param nId
+     *            the htmlpage id
+     * @param plugin
+     *            the plugin
+     */
+    private static void reload( int nId, Plugin plugin )
+    {
+        HtmlPage htmlPage = HtmlPageHome.findByPrimaryKey( nId, plugin );
+
+        if ( htmlPage == null )
+        {
+            HtmlPageActivationIndex.getInstance( ).remove( nId );
+            HtmlPageWorkgroupIndex.getInstance( ).remove( nId );
+        }
+        else
+        {
+            HtmlPageActivationIndex.getInstance( ).put( htmlPage );
+            HtmlPageWorkgroupIndex.getInstance( ).put( htmlPage );
+        }
+
+        PublicHtmlPageCacheService.getService( ).removeHtmlPage( nId );
+    }
+
+    /**
+     * Checks if changes not read yet may have been purged. The changes are purged after htmlpage.changelog.retention seconds : the changes committed
+     * since the last poll can only have been purged if it is older than half the retention, leaving room for the clock differences between the nodes.
+     * The first change must then follow the last one read, the holes of the identifiers being only checked in this case.
+     *
+     * @param lNow
+     *            the current time in milliseconds
+     * @param plugin
+     *            the plugin
+     * @return true if changes not read yet may have been purged
+     */
+    private boolean isPurged( long lNow, Plugin plugin )
+    {
+        long lRetention = AppPropertiesService.getPropertyInt( PROPERTY_RETENTION, 3600 ) * 1000L;
+
+        return lNow - _lLastPoll >= lRetention / 2 && HtmlPageHome.getFirstChangeLogId( plugin ) > _lLastIdChange + 1;
+    }
+
+    /**
+     * Removes the changes older than htmlpage.changelog.retention seconds, at most once per retention period
+     *
+     * @param lNow
+     *            the current time in milliseconds
+     * @param plugin
+     *            the plugin
+     */
+    private void purge( long lNow, Plugin plugin )
+    {
+        long lRetention = AppPropertiesService.getPropertyInt( PROPERTY_RETENTION, 3600 ) * 1000L;
+
+        if ( lNow - _lLastPurge >= lRetention )
+        {
+            HtmlPageHome.removeChangeLog( new Timestamp( lNow - lRetention ), plugin );
+            _lLastPurge = lNow;
+        }
+    }
+}
@@ -0,0 +1,442 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.htmlpage.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import fr.paris.lutece.portal.service.util.AppException;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ *
+ * HtmlPageContentCache : cache of the html contents of the published htmlpages, bounded by their size in memory rather than by their number. It is only
+ * used when htmlpage.cache.content.maxBytes is set, the contents being kept in the snapshot of the published htmlpages otherwise.
+ *
+ * The eviction is a segmented LRU : a content read for the first time enters the probation segment, and moves to the protected segment if it is read
+ * again before being evicted. The least recently used contents of the protected segment go back to the probation segment when it is full, so that a
+ * scan of all the htmlpages (by the indexer for instance) can't evict the frequently read ones.
+ *
+ * The contents are kept encoded in UTF-8, and deflated when they are bigger than htmlpage.cache.content.compressThreshold bytes. They are decoded on
+ * each read. Each content is stored with the version of the htmlpage it was loaded for, and only returned for this version : a content loaded before a
+ * modification and put after its removal can't be served for the modified htmlpage.
+ *
+ */
+public final class HtmlPageContentCache
+{
+    // Properties
+    private static final String PROPERTY_MAX_BYTES = "htmlpage.cache.content.maxBytes";
+    private static final String PROPERTY_PROTECTED_RATIO = "htmlpage.cache.content.protectedRatio";
+    private static final String PROPERTY_COMPRESS_THRESHOLD = "htmlpage.cache.content.compressThreshold";
+
+    // Estimated memory footprint of an entry without its content : map entry, key and array header
+    private static final int ENTRY_OVERHEAD = 64;
+
+    // Header of the encoded contents : the format, the version of the htmlpage, then the decoded length if the content is deflated
+    private static final byte FORMAT_RAW = 0;
+    private static final byte FORMAT_DEFLATED = 1;
+    private static final int HEADER_VERSION_OFFSET = 1;
+    private static final int HEADER_RAW_LENGTH = 9;
+    private static final int HEADER_DEFLATED_LENGTH = 13;
+
+    private static final HtmlPageContentCache _singleton = new HtmlPageContentCache( );
+
+    private final long _lMaxBytes;
+    private final long _lMaxProtectedBytes;
+    private final int _nCompressThreshold;
+    private final LinkedHashMap<Integer, byte [ ]> _mapProbation = new LinkedHashMap<>( 16, 0.75f, true );
+    private final LinkedHashMap<Integer, byte [ ]> _mapProtected = new LinkedHashMap<>( 16, 0.75f, true );
+    private long _lProbationBytes;
+    private long _lProtectedBytes;
+
+    /**
+     * Private constructor
+     */
+    private HtmlPageContentCache( )
+    {
+        _lMaxBytes = Math.max( 0L, Long.parseLong( AppPropertiesService.getProperty( PROPERTY_MAX_BYTES, "0" ).trim( ) ) );
+        _lMaxProtectedBytes = _lMaxBytes * AppPropertiesService.getPropertyInt( PROPERTY_PROTECTED_RATIO, 80 ) / 100;
+        _nCompressThreshold = AppPropertiesService.getPropertyInt( PROPERTY_COMPRESS_THRESHOLD, 4096 );
+    }
+
+    /**
+     * Get the instance of this cache
+     *
+     * @return the instance of this cache
+     */
+    public static HtmlPageContentCache getInstance( )
+    {
+        return _singleton;
+    }
+
+    /**
+     * Checks if the html contents are kept in this cache rather than in the snapshot
+     *
+     * @return true if a byte budget is configured
+     */
+    public boolean isEnabled( )
+    {
+        return _lMaxBytes > 0;
+    }
+
+    /**
+     * Gets the html content of a version of a htmlpage
+     *
+     * @param nId
+     *            the htmlpage id
+     * @param lVersion
+     *            the htmlpage version
+     * @return the html content, or null if it is not in the cache for this version
+     */
+    public String get( int nId, long lVersion )
+    {
+        byte [ ] content = getEncoded( nId, lVersion );
+
+        return ( content == null ) ? null : decode( content );
+    }
+
+    /**
+     * Gets the encoded html content of a version of a htmlpage and updates the segments
+     *
+     * @param nId
+     *            the htmlpage id
+     * @param lVersion
+     *            the htmlpage version
+     * @return the encoded html content, or null if it is not in the cache for this version
+     */
+    private synchronized byte [ ] getEncoded( int nId, long lVersion )
+    {
+        byte [ ] content = _mapProtected.get( nId );
+
+        if ( content == null )
+        {
+            content = _mapProbation.get( nId );
+
+            if ( content != null && readVersion( content ) == lVersion )
+            {
+                // Second read : the content is promoted
+                _mapProbation.remove( nId );
+                long lWeight = getWeight( content );
+                _lProbationBytes -= lWeight;
+                _mapProtected.put( nId, content );
+                _lProtectedBytes += lWeight;
+                demote( );
+            }
+        }
+
+        return ( content == null || readVersion( content ) != lVersion ) ? null : content;
+    }
+
+    /**
+     * Puts the html content of a version of a htmlpage in the cache. Contents bigger than the budget are not cached.
+     *
+     * @param nId
+     *            the htmlpage id
+     * @param lVersion
+     *            the htmlpage version
+     * @param strContent
+     *            the html content
+     */
+    public void put( int nId, long lVersion, String strContent )
+    {
+        byte [ ] content = encode( strContent, lVersion );
+        long lWeight = getWeight( content );
+
+        if ( lWeight > _lMaxBytes )
+        {
+            return;
+        }
+
+        synchronized( this )
+        {
+            remove( nId );
+            _mapProbation.put( nId, content );
+            _lProbationBytes += lWeight;
+            evict( );
+        }
+    }
+
+    /**
+     * Removes the html content of a htmlpage from the cache
+     *
+     * @param nId
+     *            the htmlpage id
+     */
+    public synchronized void remove( int nId )
+    {
+        byte [ ] content = _mapProbation.remove( nId );
+
+        if ( content != null )
+        {
+            _lProbationBytes -= getWeight( content );
+        }
+
+        content = _mapProtected.remove( nId );
+
+        if ( content != null )
+        {
+            _lProtectedBytes -= getWeight( content );
+        }
+    }
+
+    /**
+     * Removes all the html contents from the cache
+     */
+    public synchronized void clear( )
+    {
+        _mapProbation.clear( );
+        _mapProtected.clear( );
+        _lProbationBytes = 0;
+        _lProtectedBytes = 0;
+    }
+
+    /**
+     * Gets the estimated memory retained by the cached html contents
+     *
+     * @return the number of bytes
+     */
+    public synchronized long getRetainedBytes( )
+    {
+        return _lProbationBytes + _lProtectedBytes;
+    }
+
+    /**
+     * Gets the number of cached html contents
+     *
+     * @return the number of contents
+     */
+    public synchronized int getSize( )
+    {
+        return _mapProbation.size( ) + _mapProtected.size( );
+    }
+
+    /**
+     * Moves the least recently used contents of the protected segment to the probation segment while it exceeds its share of the budget
+     */
+    private void demote( )
+    {
+        Iterator<Map.Entry<Integer, byte [ ]>> iterator = _mapProtected.entrySet( ).iterator( );
+
+        while ( _lProtectedBytes > _lMaxProtectedBytes && iterator.hasNext( ) )
+        {
+            Map.Entry<Integer, byte [ ]> entry = iterator.next( );
+            long lWeight = getWeight( entry.getValue( ) );
+            iterator.remove( );
+            _lProtectedBytes -= lWeight;
+            _mapProbation.put( entry.getKey( ), entry.getValue( ) );
+            _lProbationBytes += lWeight;
+        }
+
+        evict( );
+    }
+
+    /**
+     * Evicts the least recently used contents of the probation segment, then of the protected one, while the budget is exceeded
+     */
+    private void evict( )
+    {
+        evict( _mapProbation.entrySet( ).iterator( ), true );
+        evict( _mapProtected.entrySet( ).iterator( ), false );
+    }
+
+    /**
+     * Evicts contents from a segment while the budget is exceeded
+     *
+     * @param iterator
+     *            the iterator on the segment, from the least recently used content
+     * @param bProbation
+     *            true for the probation segment
+     */
+    private void evict( Iterator<Map.Entry<Integer, byte [ ]>> iterator, boolean bProbation )
+    {
+        while ( _lProbationBytes + _lProtectedBytes > _lMaxBytes && iterator.hasNext( ) )
+        {
+            long lWeight = getWeight( iterator.next( ).getValue( ) );
+            iterator.remove( );
+
+            if ( bProbation )
+            {
+                _lProbationBytes -= lWeight;
+            }
+            else
+            {
+                _lProtectedBytes -= lWeight;
+            }
+        }
+    }
+
+    /**
+     * Estimates the memory footprint of a cached content
+     *
+     * @param content
+     *            the encoded content
+     * @return the number of bytes
+     */
+    private static long getWeight( byte [ ] content )
+    {
+        return ENTRY_OVERHEAD + (long) content.length;
+    }
+
+    /**
+     * Encodes a content in UTF-8, deflated if it is bigger than the compression threshold and if the compression saves memory
+     *
+     * @param strContent
+     *            the content
+     * @param lVersion
+     *            the htmlpage version
+     * @return the encoded content, starting with its format and version
+     */
+    private byte [ ] encode( String strContent, long lVersion )
+    {
+        byte [ ] utf8 = strContent.getBytes( StandardCharsets.UTF_8 );
+
+        if ( _nCompressThreshold > 0 && utf8.length > _nCompressThreshold )
+        {
+            Deflater deflater = new Deflater( Deflater.BEST_SPEED );
+
+            try
+            {
+                deflater.setInput( utf8 );
+                deflater.finish( );
+
+                byte [ ] deflated = new byte [ utf8.length];
+                int nLength = HEADER_DEFLATED_LENGTH;
+
+                while ( !deflater.finished( ) && nLength < deflated.length )
+                {
+                    nLength += deflater.deflate( deflated, nLength, deflated.length - nLength );
+                }
+
+                if ( deflater.finished( ) && nLength < utf8.length )
+                {
+                    deflated [0] = FORMAT_DEFLATED;
+                    writeVersion( deflated, lVersion );
+                    deflated [9] = (byte) ( utf8.length >>> 24 );
+                    deflated [10] = (byte) ( utf8.length >>> 16 );
+                    deflated [11] = (byte) ( utf8.length >>> 8 );
+                    deflated [12] = (byte) utf8.length;
+
+                    return Arrays.copyOf( deflated, nLength );
+                }
+            }
+            finally
+            {
+                deflater.end( );
+            }
+        }
+
+        byte [ ] raw = new byte [ utf8.length + HEADER_RAW_LENGTH];
+        raw [0] = FORMAT_RAW;
+        writeVersion( raw, lVersion );
+        System.arraycopy( utf8, 0, raw, HEADER_RAW_LENGTH, utf8.length );
+
+        return raw;
+    }
+
+    /**
+     * Writes the htmlpage version in the header of an encoded content
+     *
+     * @param content
+     *            the encoded content
+     * @param lVersion
+     *            the htmlpage version
+     */
+    private static void writeVersion( byte [ ] content, long lVersion )
+    {
+        for ( int i = 0; i < Long.BYTES; i++ )
+        {
+            content [HEADER_VERSION_OFFSET + i] = (byte) ( lVersion >>> ( 56 - 8 * i ) );
+        }
+    }
+
+    /**
+     * Reads the htmlpage version in the header of an encoded content
+     *
+     * @param content
+     *            the encoded content
+     * @return the htmlpage version
+     */
+    private static long readVersion( byte [ ] content )
+    {
+        long lVersion = 0;
+
+        for ( int i = 0; i < Long.BYTES; i++ )
+        {
+            lVersion = ( lVersion << 8 ) | ( content [HEADER_VERSION_OFFSET + i] & 0xFF );
+        }
+
+        return lVersion;
+    }
+
+    /**
+     * Decodes a content encoded by {@link #encode(String, long)}
+     *
+     * @param content
+     *            the encoded content
+     * @return the content
+     */
+    private static String decode( byte [ ] content )
+    {
+        if ( content [0] == FORMAT_RAW )
+        {
+            return new String( content, HEADER_RAW_LENGTH, content.length - HEADER_RAW_LENGTH, StandardCharsets.UTF_8 );
+        }
+
+        int nLength = ( ( content [9] & 0xFF ) << 24 ) | ( ( content [10] & 0xFF ) << 16 ) | ( ( content [11] & 0xFF ) << 8 ) | ( content [12] & 0xFF );
+        byte [ ] utf8 = new byte [ nLength];
+        Inflater inflater = new Inflater( );
+
+        try
+        {
+            inflater.setInput( content, HEADER_DEFLATED_LENGTH, content.length - HEADER_DEFLATED_LENGTH );
+            inflater.inflate( utf8 );
+        }
+        catch( DataFormatException e )
+        {
+            throw new AppException( "Unable to decode a cached htmlpage content", e );
+        }
+        finally
+        {
+            inflater.end( );
+        }
+
+        return new String( utf8, StandardCharsets.UTF_8 );
+    }
+}
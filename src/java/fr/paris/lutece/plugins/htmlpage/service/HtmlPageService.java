@@ -33,12 +33,25 @@
  */
 package fr.paris.lutece.plugins.htmlpage.service;
 
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.lang3.StringUtils;
 
 import fr.paris.lutece.plugins.htmlpage.business.HtmlPage;
 import fr.paris.lutece.plugins.htmlpage.business.HtmlPageHome;
 import fr.paris.lutece.plugins.htmlpage.utils.HtmlPageUtil;
+import fr.paris.lutece.portal.service.init.ShutdownService;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
 
 /**
  * 
@@ -46,7 +59,21 @@ import fr.paris.lutece.plugins.htmlpage.utils.HtmlPageUtil;
  */
 public class HtmlPageService implements IHtmlPageService
 {
-    private static HtmlPageService _singleton;
+    private static final String THREAD_REFRESH_NAME = "htmlpage-snapshot-refresh";
+
+    // Properties
+    private static final String PROPERTY_WARMUP_ENABLED = "htmlpage.cache.warmup.enabled";
+
+    private static final HtmlPageService _singleton = new HtmlPageService( );
+
+    private final Object _lockSnapshot = new Object( );
+    private final AtomicBoolean _bRefreshPending = new AtomicBoolean( );
+    private volatile boolean _bReady;
+    private final ExecutorService _executorRefresh = Executors.newSingleThreadExecutor( runnable -> {
+        Thread thread = new Thread( runnable, THREAD_REFRESH_NAME );
+        thread.setDaemon( true );
+        return thread;
+    } );
 
     /**
      * Initializes the Housing service
@@ -55,6 +82,51 @@ public class HtmlPageService implements IHtmlPageService
     public void init( )
     {
         HtmlPage.init( );
+        HtmlPageChangeLogPoller.getInstance( ).start( );
+        ShutdownService.getInstance( ).registerShutdownJob( _executorRefresh::shutdownNow );
+
+        if ( AppPropertiesService.getPropertyBoolean( PROPERTY_WARMUP_ENABLED, false ) )
+        {
+            _executorRefresh.execute( this::warmUp );
+        }
+        else
+        {
+            _bReady = true;
+        }
+    }
+
+    @Override
+    public boolean isReady( )
+    {
+        return _bReady;
+    }
+
+    /**
+     * Loads the published htmlpages and the markers of the portal templates, then marks the service as ready
+     */
+    private void warmUp( )
+    {
+        long lStart = System.currentTimeMillis( );
+
+        try
+        {
+            if ( PublicHtmlPageCacheService.getService( ).isCacheEnable( ) )
+            {
+                refreshSnapshot( );
+            }
+
+            HtmlPageTemplateMarkerIndex.getInstance( ).getRequiredIds( );
+
+            AppLogService.info( "HtmlPage cache warmed up in {} ms", System.currentTimeMillis( ) - lStart );
+        }
+        catch( RuntimeException e )
+        {
+            AppLogService.error( "Unable to warm up the htmlpage cache", e );
+        }
+        finally
+        {
+            _bReady = true;
+        }
     }
 
     /**
@@ -64,70 +136,300 @@ public class HtmlPageService implements IHtmlPageService
      */
     public static HtmlPageService getInstance( )
     {
-        if ( _singleton == null )
-        {
-            _singleton = new HtmlPageService( );
-        }
         return _singleton;
     }
 
     @Override
     public HtmlPage getHtmlPageCache( int nId )
     {
-        HtmlPage htmlPage = PublicHtmlPageCacheService.getService( ).getHtmlPageCache( String.valueOf( nId ) );
-        
-        if ( htmlPage == null || !HtmlPageUtil.isActivedPageHtml( htmlPage ))
+        if ( !PublicHtmlPageCacheService.getService( ).isCacheEnable( ) )
+        {
+            return HtmlPageHome.findEnabledHtmlPage( nId, HtmlPagePlugin.getPlugin( ) );
+        }
+
+        return getSnapshot( ).getHtmlPage( nId );
+    }
+
+    @Override
+    public String getHtmlContent( HtmlPage htmlPage )
+    {
+        String strContent = htmlPage.getHtmlContent( );
+
+        if ( strContent == null )
         {
-            htmlPage = getEnableHtmlPage( nId );
-            
-            if ( htmlPage != null && !HtmlPageUtil.isRoleExist( htmlPage.getRole( ) ))
+            HtmlPageContentCache contentCache = HtmlPageContentCache.getInstance( );
+            strContent = contentCache.get( htmlPage.getId( ), htmlPage.getVersion( ) );
+
+            if ( strContent == null )
             {
-                PublicHtmlPageCacheService.getService( ).addHtmlPageCache( htmlPage );
-            }           
+                HtmlPage htmlPageLoaded = HtmlPageHome.findByPrimaryKey( htmlPage.getId( ), HtmlPagePlugin.getPlugin( ) );
+
+                if ( htmlPageLoaded != null )
+                {
+                    // A NULL content is cached as an empty one, so that it is not loaded again on each read
+                    strContent = StringUtils.defaultString( htmlPageLoaded.getHtmlContent( ) );
+
+                    // A content modified since the htmlpage was published is returned but not cached for its version
+                    if ( htmlPageLoaded.getVersion( ) == htmlPage.getVersion( ) )
+                    {
+                        contentCache.put( htmlPage.getId( ), htmlPage.getVersion( ), strContent );
+                    }
+                }
+            }
         }
-        return htmlPage;
+        return StringUtils.defaultString( strContent );
+    }
+
+    @Override
+    public HtmlPage getHtmlPageWithContent( HtmlPage htmlPage )
+    {
+        if ( htmlPage.getHtmlContent( ) != null )
+        {
+            return htmlPage;
+        }
+
+        HtmlPage htmlPageWithContent = HtmlPageUtil.getSummary( htmlPage );
+        htmlPageWithContent.setHtmlContent( getHtmlContent( htmlPage ) );
+
+        return htmlPageWithContent;
+    }
+
+    @Override
+    public Map<Integer, HtmlPage> getHtmlPagesCache( Collection<Integer> listIds )
+    {
+        if ( !PublicHtmlPageCacheService.getService( ).isCacheEnable( ) )
+        {
+            return getEnableHtmlPages( listIds );
+        }
+
+        HtmlPageSnapshot snapshot = getSnapshot( );
+        Map<Integer, HtmlPage> mapHtmlPages = new HashMap<>( );
+
+        for ( Integer nId : listIds )
+        {
+            HtmlPage htmlPage = snapshot.getHtmlPage( nId );
+
+            if ( htmlPage != null )
+            {
+                mapHtmlPages.put( nId, htmlPage );
+            }
+        }
+        return mapHtmlPages;
     }
 
     @Override
     public List<HtmlPage> getHtmlPageListCache( )
     {
-        List<HtmlPage> htmlPageList = PublicHtmlPageCacheService.getService( ).getHtmlPageListCache(  );
-        
-        if ( htmlPageList == null )
+        if ( !PublicHtmlPageCacheService.getService( ).isCacheEnable( ) )
         {
-            htmlPageList = getEnabledHtmlPageList( );
-            
-            if ( htmlPageList != null )
+            return getActiveHtmlPages( System.currentTimeMillis( ) );
+        }
+
+        return getSnapshot( ).getHtmlPageList( );
+    }
+
+    @Override
+    public HtmlPageSnapshot getSnapshot( )
+    {
+        PublicHtmlPageCacheService cacheService = PublicHtmlPageCacheService.getService( );
+        HtmlPageSnapshot snapshot = cacheService.getSnapshot( );
+
+        if ( snapshot == null )
+        {
+            if ( !cacheService.isCacheEnable( ) )
+            {
+                // Without cache, the snapshot is only built for this call from the database, and is outdated as soon as it is built
+                long lNow = System.currentTimeMillis( );
+
+                return new HtmlPageSnapshot( getActiveHtmlPages( lNow ), lNow, cacheService.getChangeCount( ) );
+            }
+
+            if ( cacheService.isRefreshAhead( ) )
             {
-                PublicHtmlPageCacheService.getService( ).addHtmlPageCache( htmlPageList );
-            }           
+                snapshot = cacheService.getStaleSnapshot( );
+
+                if ( snapshot != null )
+                {
+                    refreshSnapshotAsync( );
+                    return snapshot;
+                }
+            }
+
+            // Only one thread rebuilds the snapshot, the others wait for it and use its result
+            synchronized( _lockSnapshot )
+            {
+                snapshot = cacheService.getSnapshot( );
+
+                if ( snapshot == null )
+                {
+                    snapshot = refreshSnapshot( );
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Builds the snapshot of the published htmlpages and puts it in the cache. The snapshot expires at the first start or end date reached by a
+     * conditioned htmlpage.
+     * 
+     * @return the snapshot
+     */
+    public HtmlPageSnapshot refreshSnapshot( )
+    {
+        synchronized( _lockSnapshot )
+        {
+            PublicHtmlPageCacheService cacheService = PublicHtmlPageCacheService.getService( );
+            HtmlPageSnapshot snapshot = buildSnapshot( cacheService.getChangeCount( ) );
+
+            cacheService.setSnapshot( snapshot );
+
+            return snapshot;
         }
-        return htmlPageList;
+    }
+
+    /**
+     * Rebuilds the snapshot of the published htmlpages in background. Nothing is done if a rebuild is already waiting to start.
+     */
+    public void refreshSnapshotAsync( )
+    {
+        if ( _bRefreshPending.compareAndSet( false, true ) )
+        {
+            _executorRefresh.execute( ( ) -> {
+                // Cleared before the build so that a change made during it schedules another one
+                _bRefreshPending.set( false );
+
+                try
+                {
+                    refreshSnapshot( );
+                }
+                catch( RuntimeException e )
+                {
+                    AppLogService.error( "Unable to refresh the htmlpage snapshot", e );
+                }
+            } );
+        }
+    }
+
+    /**
+     * Builds the snapshot of the published htmlpages from the activation index
+     * 
+     * @param lChangeCount
+     *            the number of htmlpage changes, read before building the snapshot
+     * @return the snapshot
+     */
+    private static HtmlPageSnapshot buildSnapshot( long lChangeCount )
+    {
+        long lNow = System.currentTimeMillis( );
+
+        return new HtmlPageSnapshot( getActiveHtmlPages( lNow ), HtmlPageActivationIndex.getInstance( ).getNextActivationChange( lNow ), lChangeCount );
+    }
+
+    /**
+     * Gets the htmlpages active at the given time from the activation index. The database is queried when the cache is disabled, or when the time is
+     * before the current time of the index which doesn't hold the ended htmlpages.
+     * 
+     * @param lTime
+     *            the time in milliseconds
+     * @return the list of the active htmlpages, ordered by description
+     */
+    private static List<HtmlPage> getActiveHtmlPages( long lTime )
+    {
+        List<HtmlPage> listHtmlPages = null;
+
+        if ( PublicHtmlPageCacheService.getService( ).isCacheEnable( ) )
+        {
+            listHtmlPages = HtmlPageActivationIndex.getInstance( ).getActiveHtmlPages( lTime );
+        }
+
+        if ( listHtmlPages == null )
+        {
+            listHtmlPages = new ArrayList<>( HtmlPageHome.findEnabledHtmlPageList( new Timestamp( lTime ), HtmlPagePlugin.getPlugin( ) ) );
+        }
+
+        return listHtmlPages;
     }
 
     @Override
     public HtmlPage getEnableHtmlPage( int nId )
     {
-        HtmlPage htmlPage = HtmlPageHome.findByPrimaryKey( nId, HtmlPagePlugin.getPlugin( ) );
-        
-        return HtmlPageUtil.isActivedPageHtml( htmlPage ) ? htmlPage : null;
+        PublicHtmlPageCacheService cacheService = PublicHtmlPageCacheService.getService( );
+
+        if ( cacheService.isMissing( nId ) )
+        {
+            return null;
+        }
+
+        HtmlPage htmlPage = HtmlPageHome.findEnabledHtmlPage( nId, HtmlPagePlugin.getPlugin( ) );
+
+        if ( htmlPage == null )
+        {
+            putMissing( cacheService, Collections.singleton( nId ) );
+        }
+        return htmlPage;
     }
 
     @Override
-    public List<HtmlPage> getEnabledHtmlPageList( )
+    public Map<Integer, HtmlPage> getEnableHtmlPages( Collection<Integer> listIds )
     {
-        List<HtmlPage> enablehtmlPageList = new ArrayList<>( );
-        List<HtmlPage> htmlPageList = ( List<HtmlPage> ) HtmlPageHome.findAll( HtmlPagePlugin.getPlugin( ) );
-       
-        for ( HtmlPage htmlPage : htmlPageList )
+        PublicHtmlPageCacheService cacheService = PublicHtmlPageCacheService.getService( );
+        List<Integer> listIdsToLoad = new ArrayList<>( );
+
+        for ( Integer nId : listIds )
         {
-            if ( HtmlPageUtil.isActivedPageHtml( htmlPage ) )
+            if ( !cacheService.isMissing( nId ) )
             {
-                enablehtmlPageList.add( htmlPage );
+                listIdsToLoad.add( nId );
             }
         }
-        
-        return enablehtmlPageList;
+
+        if ( listIdsToLoad.isEmpty( ) )
+        {
+            return new HashMap<>( );
+        }
+
+        Map<Integer, HtmlPage> mapHtmlPages = HtmlPageHome.findEnabledByPrimaryKeys( listIdsToLoad, HtmlPagePlugin.getPlugin( ) );
+
+        listIdsToLoad.removeAll( mapHtmlPages.keySet( ) );
+        putMissing( cacheService, listIdsToLoad );
+
+        return mapHtmlPages;
+    }
+
+    /**
+     * Caches tombstones for htmlpages missing, disabled or inactive in the database. The tombstones expire at the next activation change so that a
+     * conditioned htmlpage is found as soon as it starts.
+     * 
+     * @param cacheService
+     *            the cache service
+     * @param listIds
+     *            the ids of the htmlpages
+     */
+    private static void putMissing( PublicHtmlPageCacheService cacheService, Collection<Integer> listIds )
+    {
+        if ( listIds.isEmpty( ) || !cacheService.isCacheEnable( ) )
+        {
+            return;
+        }
+
+        long lMaxExpiry = HtmlPageActivationIndex.getInstance( ).getNextActivationChange( System.currentTimeMillis( ) );
+
+        for ( Integer nId : listIds )
+        {
+            cacheService.putMissing( nId, lMaxExpiry );
+        }
+    }
+
+    @Override
+    public List<HtmlPage> getEnabledHtmlPageList( )
+    {
+        return getActiveHtmlPages( System.currentTimeMillis( ) );
+    }
+
+    @Override
+    public List<HtmlPage> getEnabledHtmlPageList( Timestamp date )
+    {
+        return getActiveHtmlPages( date.getTime( ) );
     }
 
 }
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.htmlpage.service;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import fr.paris.lutece.plugins.htmlpage.business.HtmlPage;
+
+/**
+ *
+ * HtmlPageSnapshot : view of the htmlpages published at a given time, which is never modified once built. A new snapshot is built on every change, so
+ * that readers always get a consistent view without locking. The htmlpages are shared with the activation index and with all the readers without
+ * being copied : they must not be modified, {@link fr.paris.lutece.plugins.htmlpage.utils.HtmlPageUtil#getSummary(HtmlPage)} gives a copy to
+ * modify.
+ *
+ */
+public final class HtmlPageSnapshot
+{
+    private final Map<Integer, HtmlPage> _mapHtmlPages;
+    private final List<HtmlPage> _listHtmlPages;
+    private final Map<String, List<HtmlPage>> _mapHtmlPagesByRole;
+    private final Map<String, BitSet> _mapPositionsByRole;
+    private final long _lValidUntil;
+    private final long _lChangeCount;
+    private final long _lCreationTime = System.currentTimeMillis( );
+
+    /**
+     * Constructor
+     *
+     * @param listHtmlPages
+     *            the published htmlpages, ordered by description
+     * @param lValidUntil
+     *            the time in milliseconds until which the snapshot is valid
+     * @param lChangeCount
+     *            the number of htmlpage changes, read before loading the htmlpages
+     */
+    public HtmlPageSnapshot( List<HtmlPage> listHtmlPages, long lValidUntil, long lChangeCount )
+    {
+        Map<Integer, HtmlPage> mapHtmlPages = new HashMap<>( );
+        Map<String, List<HtmlPage>> mapHtmlPagesByRole = new LinkedHashMap<>( );
+        Map<String, BitSet> mapPositionsByRole = new HashMap<>( );
+        int nPosition = 0;
+
+        for ( HtmlPage htmlPage : listHtmlPages )
+        {
+            mapHtmlPages.put( htmlPage.getId( ), htmlPage );
+            mapHtmlPagesByRole.computeIfAbsent( htmlPage.getRole( ), strRole -> new ArrayList<>( ) ).add( htmlPage );
+            mapPositionsByRole.computeIfAbsent( htmlPage.getRole( ), strRole -> new BitSet( listHtmlPages.size( ) ) ).set( nPosition++ );
+        }
+
+        for ( Map.Entry<String, List<HtmlPage>> entry : mapHtmlPagesByRole.entrySet( ) )
+        {
+            entry.setValue( Collections.unmodifiableList( entry.getValue( ) ) );
+        }
+
+        _mapHtmlPages = Collections.unmodifiableMap( mapHtmlPages );
+        _listHtmlPages = Collections.unmodifiableList( new ArrayList<>( listHtmlPages ) );
+        _mapHtmlPagesByRole = Collections.unmodifiableMap( mapHtmlPagesByRole );
+        _mapPositionsByRole = mapPositionsByRole;
+        _lValidUntil = lValidUntil;
+        _lChangeCount = lChangeCount;
+    }
+
+    /**
+     * Gets a published htmlpage
+     *
+     * @param nId
+     *            the htmlpage id
+     * @return the htmlpage, or null if it is not published
+     */
+    public HtmlPage getHtmlPage( int nId )
+    {
+        return _mapHtmlPages.get( nId );
+    }
+
+    /**
+     * Gets the published htmlpages
+     *
+     * @return the htmlpages ordered by description
+     */
+    public List<HtmlPage> getHtmlPageList( )
+    {
+        return _listHtmlPages;
+    }
+
+    /**
+     * Gets the roles of the published htmlpages
+     *
+     * @return the roles, {@link HtmlPage#ROLE_NONE} for the htmlpages visible by everyone
+     */
+    public Set<String> getRoles( )
+    {
+        return _mapHtmlPagesByRole.keySet( );
+    }
+
+    /**
+     * Gets the published htmlpages of a role
+     *
+     * @param strRole
+     *            the role
+     * @return the htmlpages ordered by description
+     */
+    public List<HtmlPage> getHtmlPageList( String strRole )
+    {
+        return _mapHtmlPagesByRole.getOrDefault( strRole, Collections.emptyList( ) );
+    }
+
+    /**
+     * Gets the published htmlpages of the roles accepted by a predicate
+     *
+     * @param predicateRole
+     *            the predicate, called once per role
+     * @return the htmlpages ordered by description
+     */
+    public List<HtmlPage> getHtmlPageList( Predicate<String> predicateRole )
+    {
+        BitSet positions = new BitSet( _listHtmlPages.size( ) );
+
+        for ( Map.Entry<String, BitSet> entry : _mapPositionsByRole.entrySet( ) )
+        {
+            if ( predicateRole.test( entry.getKey( ) ) )
+            {
+                positions.or( entry.getValue( ) );
+            }
+        }
+
+        List<HtmlPage> listHtmlPages = new ArrayList<>( positions.cardinality( ) );
+
+        for ( int nPosition = positions.nextSetBit( 0 ); nPosition >= 0; nPosition = positions.nextSetBit( nPosition + 1 ) )
+        {
+            listHtmlPages.add( _listHtmlPages.get( nPosition ) );
+        }
+
+        return listHtmlPages;
+    }
+
+    /**
+     * Gets the time at which the snapshot was built. No published htmlpage has been modified after it.
+     *
+     * @return the time in milliseconds
+     */
+    public long getCreationTime( )
+    {
+        return _lCreationTime;
+    }
+
+    /**
+     * Gets the time at which a conditioned htmlpage is activated or deactivated, making the snapshot outdated
+     *
+     * @return the time in milliseconds, Long.MAX_VALUE if no activation change is scheduled
+     */
+    public long getValidUntil( )
+    {
+        return _lValidUntil;
+    }
+
+    /**
+     * Gets the number of htmlpage changes when the snapshot was built. The snapshot is outdated as soon as another change is counted.
+     *
+     * @return the number of changes
+     */
+    public long getChangeCount( )
+    {
+        return _lChangeCount;
+    }
+
+    /**
+     * Checks if the snapshot is still valid, that is if no conditioned htmlpage has been activated or deactivated since it was built
+     *
+     * @param lTime
+     *            the time in milliseconds
+     * @return true if the snapshot is valid at the given time
+     */
+    public boolean isValid( long lTime )
+    {
+        return lTime < _lValidUntil;
+    }
+}
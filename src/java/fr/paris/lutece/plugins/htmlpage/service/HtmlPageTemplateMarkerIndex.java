@@ -0,0 +1,352 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.htmlpage.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPathService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ *
+ * HtmlPageTemplateMarkerIndex : index of the htmlpage_&lt;id&gt; markers referenced by the portal templates listed in the htmlpage.page_include.templates
+ * property, or by the page frameset set by the htmlpage.page_include.frameset property if none is listed, and by the templates they include. The templates are scanned once, and scanned again when one
+ * of them is modified or when the htmlpage cache is reset, reading the property again. The result of a scan is never modified, so that it is read
+ * without locking.
+ *
+ */
+public final class HtmlPageTemplateMarkerIndex
+{
+    // Properties
+    private static final String PROPERTY_TEMPLATES = "htmlpage.page_include.templates";
+    private static final String PROPERTY_FRAMESET = "htmlpage.page_include.frameset";
+    private static final String PROPERTY_CHECK_INTERVAL = "htmlpage.page_include.templates.checkInterval";
+
+    // Constants
+    private static final String PATH_TEMPLATES = "path.templates";
+    private static final String PATH_SEPARATOR = "/";
+    private static final Pattern PATTERN_MARKER = Pattern.compile( "htmlpage_(\\d+)" );
+    private static final Pattern PATTERN_INCLUDE = Pattern.compile( "<#include\\s+\"([^\"]+)\"" );
+    private static final long DEFAULT_CHECK_INTERVAL = 60L;
+    private static final String DEFAULT_FRAMESET = "skin/site/page_frameset.html";
+
+    private static final HtmlPageTemplateMarkerIndex _singleton = new HtmlPageTemplateMarkerIndex( );
+
+    private final long _lCheckInterval = AppPropertiesService.getPropertyLong( PROPERTY_CHECK_INTERVAL, DEFAULT_CHECK_INTERVAL ) * 1000L;
+    private final AtomicLong _lLastCheck = new AtomicLong( );
+    private volatile Markers _markers;
+
+    /**
+     * Private constructor
+     */
+    private HtmlPageTemplateMarkerIndex( )
+    {
+    }
+
+    /**
+     * Get the instance of this index
+     *
+     * @return the instance of this index
+     */
+    public static HtmlPageTemplateMarkerIndex getInstance( )
+    {
+        return _singleton;
+    }
+
+    /**
+     * Gets the page frameset template, which is rendered with the markers of the include
+     *
+     * @return the template path, relative to the templates directory
+     */
+    public static String getFramesetTemplate( )
+    {
+        return AppPropertiesService.getProperty( PROPERTY_FRAMESET, DEFAULT_FRAMESET ).trim( );
+    }
+
+    /**
+     * Gets the ids of the htmlpages referenced by all the templates
+     *
+     * @return the ids
+     */
+    public Set<Integer> getRequiredIds( )
+    {
+        return getMarkers( )._setRequiredIds;
+    }
+
+    /**
+     * Gets the ids of the htmlpages referenced by a template and by the templates it includes
+     *
+     * @param strTemplate
+     *            the template path, relative to the templates directory
+     * @return the ids, or null if this template is not listed in the htmlpage.page_include.templates property
+     */
+    public Set<Integer> getRequiredIds( String strTemplate )
+    {
+        return getMarkers( )._mapIdsByTemplate.get( strTemplate );
+    }
+
+    /**
+     * Clears the index. The templates will be scanned again on next use.
+     */
+    public void reset( )
+    {
+        _markers = null;
+    }
+
+    /**
+     * Gets the result of the last scan, scanning the templates if they have never been scanned or if they have been modified
+     *
+     * @return the markers
+     */
+    private Markers getMarkers( )
+    {
+        Markers markers = _markers;
+
+        if ( markers == null )
+        {
+            return rescan( null );
+        }
+
+        long lNow = System.currentTimeMillis( );
+        long lLastCheck = _lLastCheck.get( );
+
+        // The modification dates are checked by a single request per interval, the other ones keep using the current markers
+        if ( lNow - lLastCheck >= _lCheckInterval && _lLastCheck.compareAndSet( lLastCheck, lNow )
+                && getLastModified( markers._setFiles ) != markers._lLastModified )
+        {
+            return rescan( markers );
+        }
+
+        return markers;
+    }
+
+    /**
+     * Scans the templates, unless another thread has already replaced the given markers
+     *
+     * @param outdated
+     *            the outdated markers, null if the templates have not been scanned
+     * @return the new markers
+     */
+    private synchronized Markers rescan( Markers outdated )
+    {
+        Markers markers = _markers;
+
+        if ( markers == null || markers == outdated )
+        {
+            markers = scan( );
+            _markers = markers;
+            _lLastCheck.set( System.currentTimeMillis( ) );
+        }
+
+        return markers;
+    }
+
+    /**
+     * Scans the templates
+     *
+     * @return the markers
+     */
+    private Markers scan( )
+    {
+        Map<String, Set<Integer>> mapIdsByTemplate = new HashMap<>( );
+        Set<Integer> setRequiredIds = new HashSet<>( );
+        Set<String> setFiles = new HashSet<>( );
+        String [ ] templates = StringUtils.split( AppPropertiesService.getProperty( PROPERTY_TEMPLATES, "" ), ", " );
+
+        if ( templates.length == 0 )
+        {
+            templates = new String [ ] {
+                    getFramesetTemplate( )
+            };
+        }
+
+        for ( String strTemplate : templates )
+        {
+            Set<Integer> setIds = new HashSet<>( );
+            Set<String> setVisited = new HashSet<>( );
+
+            scanTemplate( strTemplate, setVisited, setIds );
+
+            mapIdsByTemplate.put( strTemplate, Collections.unmodifiableSet( setIds ) );
+            setRequiredIds.addAll( setIds );
+            setFiles.addAll( setVisited );
+        }
+
+        return new Markers( Collections.unmodifiableMap( mapIdsByTemplate ), Collections.unmodifiableSet( setRequiredIds ), setFiles,
+                getLastModified( setFiles ) );
+    }
+
+    /**
+     * Scans a template and the templates it includes
+     *
+     * @param strTemplate
+     *            the template path, relative to the templates directory
+     * @param setVisited
+     *            the templates already scanned
+     * @param setIds
+     *            the ids of the htmlpages referenced by the templates
+     */
+    private static void scanTemplate( String strTemplate, Set<String> setVisited, Set<Integer> setIds )
+    {
+        if ( !setVisited.add( strTemplate ) )
+        {
+            return;
+        }
+
+        try
+        {
+            String strContent = new String( Files.readAllBytes( getFile( strTemplate ).toPath( ) ), StandardCharsets.UTF_8 );
+            Matcher matcher = PATTERN_MARKER.matcher( strContent );
+
+            while ( matcher.find( ) )
+            {
+                try
+                {
+                    setIds.add( Integer.parseInt( matcher.group( 1 ) ) );
+                }
+                catch( NumberFormatException e )
+                {
+                    // A number too long for an id can't reference a htmlpage, the other markers of the template are still read
+                    AppLogService.debug( "Ignored htmlpage marker {} of the template {}", matcher.group( ), strTemplate );
+                }
+            }
+
+            Matcher matcherInclude = PATTERN_INCLUDE.matcher( strContent );
+
+            while ( matcherInclude.find( ) )
+            {
+                scanTemplate( getIncludedTemplate( strTemplate, matcherInclude.group( 1 ) ), setVisited, setIds );
+            }
+        }
+        catch( IOException e )
+        {
+            AppLogService.error( "Unable to scan the htmlpage markers of the template {}", strTemplate, e );
+        }
+    }
+
+    /**
+     * Gets the path of a template included by another one
+     *
+     * @param strTemplate
+     *            the path of the including template, relative to the templates directory
+     * @param strInclude
+     *            the path of the included template, absolute or relative to the including template
+     * @return the path of the included template, relative to the templates directory
+     */
+    private static String getIncludedTemplate( String strTemplate, String strInclude )
+    {
+        if ( strInclude.startsWith( PATH_SEPARATOR ) )
+        {
+            return strInclude.substring( 1 );
+        }
+
+        return strTemplate.substring( 0, strTemplate.lastIndexOf( PATH_SEPARATOR ) + 1 ) + strInclude;
+    }
+
+    /**
+     * Gets the last modification date of templates
+     *
+     * @param setTemplates
+     *            the template paths
+     * @return the most recent modification date in milliseconds
+     */
+    private static long getLastModified( Set<String> setTemplates )
+    {
+        long lLastModified = 0L;
+
+        for ( String strTemplate : setTemplates )
+        {
+            lLastModified = Math.max( lLastModified, getFile( strTemplate ).lastModified( ) );
+        }
+
+        return lLastModified;
+    }
+
+    /**
+     * Gets the file of a template
+     *
+     * @param strTemplate
+     *            the template path, relative to the templates directory
+     * @return the file
+     */
+    private static File getFile( String strTemplate )
+    {
+        return new File( AppPathService.getPath( PATH_TEMPLATES, strTemplate ) );
+    }
+
+    /**
+     * Result of a scan of the templates
+     */
+    private static final class Markers
+    {
+        private final Map<String, Set<Integer>> _mapIdsByTemplate;
+        private final Set<Integer> _setRequiredIds;
+        private final Set<String> _setFiles;
+        private final long _lLastModified;
+
+        /**
+         * Constructor
+         *
+         * @param mapIdsByTemplate
+         *            the ids of the htmlpages referenced by each listed template
+         * @param setRequiredIds
+         *            the ids of the htmlpages referenced by all the templates
+         * @param setFiles
+         *            the scanned templates, included ones too
+         * @param lLastModified
+         *            the most recent modification date of the scanned templates
+         */
+        private Markers( Map<String, Set<Integer>> mapIdsByTemplate, Set<Integer> setRequiredIds, Set<String> setFiles, long lLastModified )
+        {
+            _mapIdsByTemplate = mapIdsByTemplate;
+            _setRequiredIds = setRequiredIds;
+            _setFiles = setFiles;
+            _lLastModified = lLastModified;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.htmlpage.service;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import fr.paris.lutece.plugins.htmlpage.business.HtmlPage;
+import fr.paris.lutece.plugins.htmlpage.business.HtmlPageHome;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ *
+ * HtmlPageWorkgroupIndex : optional in-memory index of the htmlpage ids by workgroup key. When it is disabled, the workgroup checks are done in the database.
+ *
+ */
+public final class HtmlPageWorkgroupIndex
+{
+    // Properties
+    private static final String PROPERTY_WORKGROUP_INDEX_ENABLED = "htmlpage.workgroupIndex.enabled";
+
+    private static final HtmlPageWorkgroupIndex _singleton = new HtmlPageWorkgroupIndex( );
+
+    private final boolean _bEnabled = AppPropertiesService.getPropertyBoolean( PROPERTY_WORKGROUP_INDEX_ENABLED, false );
+    private boolean _bLoaded;
+    private final Map<String, Set<Integer>> _mapIdsByWorkgroup = new HashMap<>( );
+    private final Map<Integer, String> _mapWorkgroupById = new HashMap<>( );
+
+    /**
+     * Private constructor
+     */
+    private HtmlPageWorkgroupIndex( )
+    {
+    }
+
+    /**
+     * Get the instance of this index
+     *
+     * @return the instance of this index
+     */
+    public static HtmlPageWorkgroupIndex getInstance( )
+    {
+        return _singleton;
+    }
+
+    /**
+     * Checks if a workgroup is used by at least one htmlpage. The index is only locked when it is enabled, the database being queried otherwise.
+     *
+     * @param strWorkgroupKey
+     *            the workgroup key
+     * @return true if a htmlpage belongs to the workgroup
+     */
+    public boolean isWorkgroupUsed( String strWorkgroupKey )
+    {
+        if ( !_bEnabled )
+        {
+            return HtmlPageHome.isWorkgroupUsed( strWorkgroupKey, HtmlPagePlugin.getPlugin( ) );
+        }
+
+        return isWorkgroupIndexed( strWorkgroupKey );
+    }
+
+    /**
+     * Checks if a workgroup is used by at least one htmlpage of the index, loading it if needed
+     *
+     * @param strWorkgroupKey
+     *            the workgroup key
+     * @return true if a htmlpage of the index belongs to the workgroup
+     */
+    private synchronized boolean isWorkgroupIndexed( String strWorkgroupKey )
+    {
+        load( );
+
+        Set<Integer> setIds = _mapIdsByWorkgroup.get( strWorkgroupKey );
+
+        return setIds != null && !setIds.isEmpty( );
+    }
+
+    /**
+     * Adds or replaces a htmlpage in the index. Nothing is done until the index is loaded.
+     *
+     * @param htmlPage
+     *            the htmlpage
+     */
+    public synchronized void put( HtmlPage htmlPage )
+    {
+        if ( !_bLoaded )
+        {
+            return;
+        }
+
+        remove( htmlPage.getId( ) );
+        add( htmlPage.getId( ), htmlPage.getWorkgroup( ) );
+    }
+
+    /**
+     * Removes a htmlpage from the index
+     *
+     * @param nId
+     *            the htmlpage id
+     */
+    public synchronized void remove( int nId )
+    {
+        String strWorkgroupKey = _mapWorkgroupById.remove( nId );
+
+        if ( strWorkgroupKey != null )
+        {
+            Set<Integer> setIds = _mapIdsByWorkgroup.get( strWorkgroupKey );
+            setIds.remove( nId );
+
+            if ( setIds.isEmpty( ) )
+            {
+                _mapIdsByWorkgroup.remove( strWorkgroupKey );
+            }
+        }
+    }
+
+    /**
+     * Empties the index, which is loaded again on the next use
+     */
+    public synchronized void reset( )
+    {
+        _mapIdsByWorkgroup.clear( );
+        _mapWorkgroupById.clear( );
+        _bLoaded = false;
+    }
+
+    /**
+     * Loads the workgroups of all the htmlpages if it is not done yet
+     */
+    private void load( )
+    {
+        if ( !_bLoaded )
+        {
+            for ( HtmlPage htmlPage : HtmlPageHome.findAllSummaries( HtmlPagePlugin.getPlugin( ) ) )
+            {
+                add( htmlPage.getId( ), htmlPage.getWorkgroup( ) );
+            }
+
+            _bLoaded = true;
+        }
+    }
+
+    /**
+     * Adds a htmlpage which is not in the index
+     *
+     * @param nId
+     *            the htmlpage id
+     * @param strWorkgroupKey
+     *            the workgroup key of the htmlpage
+     */
+    private void add( int nId, String strWorkgroupKey )
+    {
+        if ( strWorkgroupKey != null )
+        {
+            _mapWorkgroupById.put( nId, strWorkgroupKey );
+            _mapIdsByWorkgroup.computeIfAbsent( strWorkgroupKey, strKey -> new HashSet<>( ) ).add( nId );
+        }
+    }
+}
@@ -66,13 +66,9 @@
 */
 package fr.paris.lutece.plugins.htmlpage.service;
 
-import fr.paris.lutece.plugins.htmlpage.business.HtmlPage;
-import fr.paris.lutece.plugins.htmlpage.business.HtmlPageHome;
 import fr.paris.lutece.portal.service.i18n.I18nService;
-import fr.paris.lutece.portal.service.plugin.PluginService;
 import fr.paris.lutece.portal.service.util.RemovalListener;
 
-import java.util.Collection;
 import java.util.Locale;
 
 /**
@@ -102,18 +98,8 @@ public class HtmlPageWorkgroupRemovalListener implements RemovalListener
             return true;
         }
 
-        Collection<HtmlPage> listHtmlPage = HtmlPageHome.findAll( PluginService.getPlugin( HtmlPagePlugin.PLUGIN_NAME ) );
-
-        for ( HtmlPage htmlpage : listHtmlPage )
-        {
-            // A htmlpage is associated to a workgroup
-            if ( ( htmlpage.getWorkgroup( ) != null ) && htmlpage.getWorkgroup( ).equals( strId ) )
-            {
-                return false;
-            }
-        }
-
-        return true;
+        // A htmlpage is associated to a workgroup
+        return !HtmlPageWorkgroupIndex.getInstance( ).isWorkgroupUsed( strId );
     }
 
     /**
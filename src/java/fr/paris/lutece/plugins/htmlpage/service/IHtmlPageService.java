@@ -1,6 +1,9 @@
 package fr.paris.lutece.plugins.htmlpage.service;
 
+import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import fr.paris.lutece.plugins.htmlpage.business.HtmlPage;
 
@@ -12,11 +15,38 @@ import fr.paris.lutece.plugins.htmlpage.business.HtmlPage;
 public interface IHtmlPageService
 {
     /**
-     * Get htmlpage in the cache by id
+     * Checks if the cache warm-up started at plugin init is over. Always true if the warm-up is disabled.
+     * @return true if the service is ready to serve the htmlpages from memory
+     */
+    public boolean isReady( );
+
+    /**
+     * Get htmlpage in the cache by id. Role-restricted htmlpages are returned too : the caller must check their visibility before showing them.
      * @param nId
      * @return htmlPage
      */
     public HtmlPage getHtmlPageCache ( int nId );
+
+    /**
+     * Get the html content of a htmlpage returned by the cache, which doesn't hold it if htmlpage.cache.content.maxBytes is set
+     * @param htmlPage the htmlpage
+     * @return the html content, empty if the htmlpage has none or has been removed
+     */
+    public String getHtmlContent( HtmlPage htmlPage );
+
+    /**
+     * Get a htmlpage returned by the cache with its html content
+     * @param htmlPage the htmlpage
+     * @return the htmlpage itself if it holds its html content, a copy holding it otherwise
+     */
+    public HtmlPage getHtmlPageWithContent( HtmlPage htmlPage );
+
+    /**
+     * Get several htmlpages in the cache by id
+     * @param listIds the ids
+     * @return the htmlpages found, by id
+     */
+    public Map<Integer, HtmlPage> getHtmlPagesCache( Collection<Integer> listIds );
     
     /**
      * Get enable htmlpage by id
@@ -24,16 +54,36 @@ public interface IHtmlPageService
      * @return htmlPage
      */
     public HtmlPage getEnableHtmlPage ( int nId );
+
+    /**
+     * Get several enable htmlpages by id, in a single database round trip
+     * @param listIds the ids
+     * @return the enable htmlpages found, by id
+     */
+    public Map<Integer, HtmlPage> getEnableHtmlPages( Collection<Integer> listIds );
     
     /**
      * Gets all htmlpage in the cache
      * @return list of html
      */
     public List<HtmlPage> getHtmlPageListCache ( );
+
+    /**
+     * Gets the snapshot of the published htmlpages. Without cache, it is built from the database on each call : use getHtmlPageCache to get a single htmlpage.
+     * @return the snapshot
+     */
+    public HtmlPageSnapshot getSnapshot( );
     
     /**
      * Gets enable htmlPage list
      * @return list of htmlpage
      */
     public List<HtmlPage> getEnabledHtmlPageList( );
+
+    /**
+     * Gets the htmlPage list enabled at the given date
+     * @param date the date
+     * @return list of htmlpage
+     */
+    public List<HtmlPage> getEnabledHtmlPageList( Timestamp date );
 }
@@ -33,10 +33,20 @@
  */
 package fr.paris.lutece.plugins.htmlpage.service;
 
-import java.util.List;
-
 import fr.paris.lutece.plugins.htmlpage.business.HtmlPage;
 import fr.paris.lutece.portal.service.cache.AbstractCacheableService;
+import fr.paris.lutece.portal.service.util.AppPathService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.math.NumberUtils;
 
 /**
  * 
@@ -46,7 +56,34 @@ import fr.paris.lutece.portal.service.cache.AbstractCacheableService;
 public class PublicHtmlPageCacheService extends AbstractCacheableService
 {
     private static final String         SERVICE_NAME = "publicHtmlPageCacheService";
-    private static PublicHtmlPageCacheService _singleton;
+
+    // Properties
+    private static final String         PROPERTY_REBUILD_ON_CHANGE = "htmlpage.cache.rebuildOnChange";
+    private static final String         PROPERTY_MISSING_TIME_TO_LIVE = "htmlpage.cache.missing.timeToLive";
+    private static final String         PROPERTY_RENDERED_ENABLED = "htmlpage.cache.rendered.enabled";
+    private static final String         PROPERTY_RENDERED_CHECK_INTERVAL = "htmlpage.cache.rendered.templateCheckInterval";
+    private static final String         PROPERTY_REFRESH_AHEAD_ENABLED = "htmlpage.cache.refreshAhead.enabled";
+    private static final String         PROPERTY_REFRESH_AHEAD_MAX_STALENESS = "htmlpage.cache.refreshAhead.maxStaleness";
+
+    // Keys
+    private static final String         KEY_MISSING_PREFIX = "[htmlpage-missing:";
+    private static final String         KEY_RENDERED_PREFIX = "[htmlpage-rendered:";
+    private static final String         KEY_SUFFIX = "]";
+
+    // Paths
+    private static final String         PATH_TEMPLATES = "path.templates";
+
+    // Infos
+    private static final String         INFO_READY = "\nready=";
+    private static final String         INFO_CONTENT_SIZE = "\ncontentCacheSize=";
+    private static final String         INFO_CONTENT_RETAINED_BYTES = "\ncontentCacheRetainedBytes=";
+
+    private static final PublicHtmlPageCacheService _singleton = new PublicHtmlPageCacheService( );
+
+    private volatile HtmlPageSnapshot _snapshot;
+    private final AtomicLong _lChangeCount = new AtomicLong( );
+    private final AtomicLong _lStaleSince = new AtomicLong( );
+    private volatile TemplateCheck _templateCheck;
 
     /**
      * Private constructor
@@ -63,10 +100,6 @@ public class PublicHtmlPageCacheService extends AbstractCacheableService
      */
     public static PublicHtmlPageCacheService getService( )
     {
-        if ( _singleton == null )
-        {
-            _singleton = new PublicHtmlPageCacheService( );
-        }
         return _singleton;
     }
 
@@ -76,59 +109,438 @@ public class PublicHtmlPageCacheService extends AbstractCacheableService
         return SERVICE_NAME;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getInfos( )
+    {
+        // ready is false while the cache warm-up started at plugin init is running. The contents kept out of the snapshot are counted apart.
+        HtmlPageContentCache contentCache = HtmlPageContentCache.getInstance( );
+
+        return super.getInfos( ) + INFO_READY + HtmlPageService.getInstance( ).isReady( ) + INFO_CONTENT_SIZE + contentCache.getSize( )
+                + INFO_CONTENT_RETAINED_BYTES + contentCache.getRetainedBytes( );
+    }
+
+    /**
+     * Get the snapshot of the published htmlpages
+     * 
+     * @return the snapshot, or null if the cache is disabled, if no snapshot has been built or if a htmlpage has been modified or activated since it was
+     *         built
+     */
+    public HtmlPageSnapshot getSnapshot( )
+    {
+        HtmlPageSnapshot snapshot = _snapshot;
+
+        if ( snapshot == null || !snapshot.isValid( System.currentTimeMillis( ) ) || snapshot.getChangeCount( ) != _lChangeCount.get( ) || !isCacheEnable( ) )
+        {
+            return null;
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Get the snapshot of the published htmlpages even if it is outdated, as long as it has not been outdated for more than
+     * htmlpage.cache.refreshAhead.maxStaleness seconds
+     * 
+     * @return the snapshot, or null if the cache is disabled, if no snapshot has been built or if it is outdated for too long
+     */
+    public HtmlPageSnapshot getStaleSnapshot( )
+    {
+        HtmlPageSnapshot snapshot = _snapshot;
+
+        if ( snapshot == null || !isCacheEnable( ) )
+        {
+            return null;
+        }
+
+        long lStaleSince = _lStaleSince.get( );
+        long lOutdated = ( lStaleSince == 0 ) ? snapshot.getValidUntil( ) : Math.min( snapshot.getValidUntil( ), lStaleSince );
+        long lMaxStaleness = AppPropertiesService.getPropertyInt( PROPERTY_REFRESH_AHEAD_MAX_STALENESS, 10 ) * 1000L;
+
+        if ( System.currentTimeMillis( ) - lOutdated > lMaxStaleness )
+        {
+            return null;
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Replace the snapshot of the published htmlpages. The snapshot holds the number of changes it was built after, so that it is published with it in
+     * a single write.
+     * 
+     * @param snapshot
+     *            the new snapshot
+     */
+    public void setSnapshot( HtmlPageSnapshot snapshot )
+    {
+        if ( isCacheEnable( ) )
+        {
+            _snapshot = snapshot;
+            _lStaleSince.set( 0 );
+
+            if ( snapshot.getChangeCount( ) != _lChangeCount.get( ) )
+            {
+                // A htmlpage has changed while the snapshot was built
+                _lStaleSince.compareAndSet( 0, System.currentTimeMillis( ) );
+            }
+        }
+    }
+
+    /**
+     * Get the number of htmlpage changes since the start
+     * 
+     * @return the number of changes
+     */
+    public long getChangeCount( )
+    {
+        return _lChangeCount.get( );
+    }
+
+    /**
+     * Checks if outdated snapshots are served while a new one is built in background
+     * 
+     * @return true if the refresh-ahead mode is enabled
+     */
+    public boolean isRefreshAhead( )
+    {
+        return AppPropertiesService.getPropertyBoolean( PROPERTY_REFRESH_AHEAD_ENABLED, false );
+    }
+
+    /**
+     * Checks if a htmlpage has been recently found missing, disabled or inactive in the database
+     * 
+     * @param nId
+     *            the htmlpage id
+     * @return true if a tombstone is cached for this id
+     */
+    public boolean isMissing( int nId )
+    {
+        Long lExpiry = (Long) getFromCache( getMissingKey( String.valueOf( nId ) ) );
+
+        return lExpiry != null && lExpiry > System.currentTimeMillis( );
+    }
+
+    /**
+     * Caches a tombstone for a htmlpage missing, disabled or inactive in the database. The tombstone lives htmlpage.cache.missing.timeToLive seconds,
+     * or less if the given time is reached first, and is removed when the htmlpage is created, modified or removed.
+     * 
+     * @param nId
+     *            the htmlpage id
+     * @param lMaxExpiry
+     *            the time in milliseconds after which the tombstone must not be used
+     */
+    public void putMissing( int nId, long lMaxExpiry )
+    {
+        long lTimeToLive = AppPropertiesService.getPropertyInt( PROPERTY_MISSING_TIME_TO_LIVE, 60 ) * 1000L;
+
+        if ( lTimeToLive > 0 )
+        {
+            putInCache( getMissingKey( String.valueOf( nId ) ), Math.min( System.currentTimeMillis( ) + lTimeToLive, lMaxExpiry ) );
+        }
+    }
+
+    /**
+     * Get the cached rendering of the xpage of a htmlpage
+     * 
+     * @param htmlPage
+     *            the htmlpage
+     * @param strTemplate
+     *            the template of the rendering
+     * @param locale
+     *            the locale of the rendering, one of the locales supported by the portal
+     * @return the rendered html, or null if it is not cached for this version of the htmlpage and of the template
+     */
+    public String getRenderedHtmlPage( HtmlPage htmlPage, String strTemplate, Locale locale )
+    {
+        RenderedHtmlPage rendered = (RenderedHtmlPage) getFromCache( getRenderedKey( htmlPage.getId( ) ) );
+
+        if ( rendered == null || !rendered.isValid( htmlPage, getTemplateLastModified( strTemplate ) ) )
+        {
+            return null;
+        }
+
+        return rendered._mapHtmlByLocale.get( locale );
+    }
+
+    /**
+     * Cache the rendering of the xpage of a htmlpage. Nothing is cached when the html contents have their own cache, so that they stay within its
+     * budget.
+     * 
+     * @param htmlPage
+     *            the htmlpage
+     * @param strTemplate
+     *            the template of the rendering
+     * @param locale
+     *            the locale of the rendering, one of the locales supported by the portal
+     * @param strHtml
+     *            the rendered html
+     */
+    public void putRenderedHtmlPage( HtmlPage htmlPage, String strTemplate, Locale locale, String strHtml )
+    {
+        if ( !isCacheEnable( ) || HtmlPageContentCache.getInstance( ).isEnabled( )
+                || !AppPropertiesService.getPropertyBoolean( PROPERTY_RENDERED_ENABLED, true ) )
+        {
+            return;
+        }
+
+        // The cached renderings are never modified : the renderings of the other locales are copied in a new one
+        String strKey = getRenderedKey( htmlPage.getId( ) );
+        long lTemplateLastModified = getTemplateLastModified( strTemplate );
+        RenderedHtmlPage rendered = (RenderedHtmlPage) getFromCache( strKey );
+        Map<Locale, String> mapHtmlByLocale = new HashMap<>( );
+
+        if ( rendered != null && rendered.isValid( htmlPage, lTemplateLastModified ) )
+        {
+            mapHtmlByLocale.putAll( rendered._mapHtmlByLocale );
+        }
+
+        mapHtmlByLocale.put( locale, strHtml );
+        putInCache( strKey, new RenderedHtmlPage( htmlPage.getVersion( ), lTemplateLastModified, mapHtmlByLocale ) );
+    }
+
+    /**
+     * Get the last modification time of a template, checked at most once per htmlpage.cache.rendered.templateCheckInterval seconds
+     * 
+     * @param strTemplate
+     *            the template, relative to the templates directory
+     * @return the last modification time
+     */
+    private long getTemplateLastModified( String strTemplate )
+    {
+        long lNow = System.currentTimeMillis( );
+        TemplateCheck check = _templateCheck;
+
+        if ( check == null || !check._strTemplate.equals( strTemplate )
+                || lNow - check._lCheckTime >= AppPropertiesService.getPropertyLong( PROPERTY_RENDERED_CHECK_INTERVAL, 60L ) * 1000L )
+        {
+            check = new TemplateCheck( strTemplate, new File( AppPathService.getPath( PATH_TEMPLATES, strTemplate ) ).lastModified( ), lNow );
+            _templateCheck = check;
+        }
+
+        return check._lLastModified;
+    }
+
     /**
      * Get htmlPage to the cache
      * 
      * @param strId
-     * @return
+     *            the htmlpage id
+     * @return the published htmlpage, or null if it is not published or if the id is invalid
+     * @deprecated use {@link HtmlPageService#getHtmlPageCache(int)}, which gets the htmlpage from the snapshot of the published htmlpages
      */
+    @Deprecated
     public HtmlPage getHtmlPageCache( String strId )
     {
-        return ( HtmlPage ) getFromCache( getCacheKey( strId ) );
+        int nId = NumberUtils.toInt( strId, -1 );
+
+        return ( nId < 0 ) ? null : HtmlPageService.getInstance( ).getHtmlPageCache( nId );
     }
-    
+
     /**
      * Get htmlPageList to the cache
      * 
-     * @param strId
-     * @return
+     * @return the published htmlpages, ordered by description
+     * @deprecated use {@link HtmlPageService#getHtmlPageListCache()}, which gets the htmlpages from the snapshot of the published htmlpages
      */
+    @Deprecated
     public List<HtmlPage> getHtmlPageListCache( )
     {
-        return ( List<HtmlPage> ) getFromCache( getCacheKey( "all" ) );
+        return HtmlPageService.getInstance( ).getHtmlPageListCache( );
     }
 
     /**
-     * Add htmlPage to the cache
+     * Add htmlPage to the cache. Does nothing : the published htmlpages are loaded in the snapshot, which is rebuilt when a htmlpage is created,
+     * modified or removed.
      * 
      * @param htmlPage
+     *            the htmlpage
+     * @deprecated the htmlpages no longer need to be added to the cache
      */
+    @Deprecated
     public void addHtmlPageCache( HtmlPage htmlPage )
     {
-        if ( htmlPage != null && getHtmlPageCache( String.valueOf( htmlPage.getId( ) ) ) == null )
+        // The snapshot already holds the published htmlpages
+    }
+
+    /**
+     * Add htmlPageList to the cache. Does nothing : the published htmlpages are loaded in the snapshot, which is rebuilt when a htmlpage is created,
+     * modified or removed.
+     * 
+     * @param htmlPageList
+     *            the htmlpages
+     * @deprecated the htmlpages no longer need to be added to the cache
+     */
+    @Deprecated
+    public void addHtmlPageCache( List<HtmlPage> htmlPageList )
+    {
+        // The snapshot already holds the published htmlpages
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void resetCache( )
+    {
+        super.resetCache( );
+
+        // The htmlpages are loaded again from the database, and the snapshots being built from the previous data are outdated
+        HtmlPageActivationIndex.getInstance( ).reset( );
+        HtmlPageContentCache.getInstance( ).clear( );
+        HtmlPageTemplateMarkerIndex.getInstance( ).reset( );
+        _templateCheck = null;
+        _lChangeCount.incrementAndGet( );
+        _snapshot = null;
+    }
+
+    /**
+     * Mark the snapshot of the published htmlpages as outdated, then rebuild it in background if htmlpage.cache.refreshAhead.enabled is true. Otherwise
+     * rebuild it now, or drop it if htmlpage.cache.rebuildOnChange is false.
+     */
+    public void invalidateSnapshot( )
+    {
+        if ( !isCacheEnable( ) )
         {
-            putInCache( getCacheKey( String.valueOf( htmlPage.getId( ) ) ), htmlPage );
+            return;
         }
+
+        _lChangeCount.incrementAndGet( );
+        _lStaleSince.compareAndSet( 0, System.currentTimeMillis( ) );
+
+        if ( isRefreshAhead( ) )
+        {
+            HtmlPageService.getInstance( ).refreshSnapshotAsync( );
+        }
+        else
+            if ( AppPropertiesService.getPropertyBoolean( PROPERTY_REBUILD_ON_CHANGE, true ) )
+            {
+                // The snapshot is replaced in a single write so that readers never see it missing
+                HtmlPageService.getInstance( ).refreshSnapshot( );
+            }
+            else
+            {
+                _snapshot = null;
+            }
     }
 
+    /**
+     * Drop the cached data of a htmlpage which has been created, modified or removed, and rebuild the snapshot. Called on every change, whether the
+     * htmlpage is published or not.
+     * 
+     * @param nId
+     *            the htmlpage id
+     */
+    public void invalidateHtmlPage( int nId )
+    {
+        removeHtmlPage( nId );
+        invalidateSnapshot( );
+    }
 
     /**
-     * Add htmlPageList to the cache
+     * Drop the cached data of a htmlpage : its tombstone, its html content and its renderings. The snapshot must be invalidated afterwards.
      * 
-     * @param htmlPage
+     * @param nId
+     *            the htmlpage id
      */
-    public void addHtmlPageCache( List<HtmlPage> htmlPageList )
+    public void removeHtmlPage( int nId )
+    {
+        removeKey( getMissingKey( String.valueOf( nId ) ) );
+        removeKey( getRenderedKey( nId ) );
+        HtmlPageContentCache.getInstance( ).remove( nId );
+    }
+
+    /**
+     * Get the cache key of the tombstone of a htmlpage
+     * 
+     * @param strId
+     *            the htmlpage id
+     * @return the key
+     */
+    private static String getMissingKey( String strId )
+    {
+        return KEY_MISSING_PREFIX + strId + KEY_SUFFIX;
+    }
+
+    /**
+     * Get the cache key of the renderings of a htmlpage
+     * 
+     * @param nId
+     *            the htmlpage id
+     * @return the key
+     */
+    private static String getRenderedKey( int nId )
+    {
+        return KEY_RENDERED_PREFIX + nId + KEY_SUFFIX;
+    }
+
+    /**
+     * Renderings of a version of a htmlpage with a version of the template, by locale
+     */
+    private static final class RenderedHtmlPage
     {
-        if ( htmlPageList != null && getHtmlPageCache( "all" ) == null )
+        private final long _lVersion;
+        private final long _lTemplateLastModified;
+        private final Map<Locale, String> _mapHtmlByLocale;
+
+        /**
+         * Constructor
+         * 
+         * @param lVersion
+         *            the version of the htmlpage
+         * @param lTemplateLastModified
+         *            the last modification time of the template
+         * @param mapHtmlByLocale
+         *            the renderings by locale
+         */
+        private RenderedHtmlPage( long lVersion, long lTemplateLastModified, Map<Locale, String> mapHtmlByLocale )
+        {
+            _lVersion = lVersion;
+            _lTemplateLastModified = lTemplateLastModified;
+            _mapHtmlByLocale = Collections.unmodifiableMap( mapHtmlByLocale );
+        }
+
+        /**
+         * Checks if the renderings are those of a version of a htmlpage and of a template
+         * 
+         * @param htmlPage
+         *            the htmlpage
+         * @param lTemplateLastModified
+         *            the last modification time of the template
+         * @return true if the versions match
+         */
+        private boolean isValid( HtmlPage htmlPage, long lTemplateLastModified )
         {
-            putInCache( getCacheKey( "all" ), htmlPageList );
+            return _lVersion == htmlPage.getVersion( ) && _lTemplateLastModified == lTemplateLastModified;
         }
     }
-    
-    private String getCacheKey( String strId )
+
+    /**
+     * Last modification time of a template, as checked at a given time
+     */
+    private static final class TemplateCheck
     {
-        StringBuilder sbKey = new StringBuilder( );
-        sbKey.append( "[htmlpage:" ).append( strId ).append( "]" );
-        return sbKey.toString( );
+        private final String _strTemplate;
+        private final long _lLastModified;
+        private final long _lCheckTime;
+
+        /**
+         * Constructor
+         * 
+         * @param strTemplate
+         *            the template
+         * @param lLastModified
+         *            the last modification time of the template
+         * @param lCheckTime
+         *            the time of the check
+         */
+        private TemplateCheck( String strTemplate, long lLastModified, long lCheckTime )
+        {
+            _strTemplate = strTemplate;
+            _lLastModified = lLastModified;
+            _lCheckTime = lCheckTime;
+        }
     }
 }
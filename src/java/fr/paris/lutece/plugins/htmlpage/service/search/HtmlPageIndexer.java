@@ -37,6 +37,9 @@ import fr.paris.lutece.plugins.htmlpage.business.HtmlPage;
 import fr.paris.lutece.plugins.htmlpage.business.HtmlPageHome;
 import fr.paris.lutece.plugins.htmlpage.service.HtmlPagePlugin;
 import fr.paris.lutece.plugins.htmlpage.service.HtmlPageService;
+import fr.paris.lutece.portal.business.indexeraction.IndexerAction;
+import fr.paris.lutece.portal.business.indexeraction.IndexerActionFilter;
+import fr.paris.lutece.portal.business.indexeraction.IndexerActionHome;
 import fr.paris.lutece.portal.service.content.XPageAppService;
 import fr.paris.lutece.portal.service.message.SiteMessageException;
 import fr.paris.lutece.portal.service.plugin.Plugin;
@@ -53,8 +56,13 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.FieldType;
@@ -85,6 +93,12 @@ public class HtmlPageIndexer implements SearchIndexer
     public static final String PROPERTY_INDEX_TYPE_PAGE = "htmlpage";
     private static final String PARAMETER_HTMLPAGE_ID = "htmlpage_id";
     private static final String JSP_SEARCH_HTMLPAGE = "jsp/site/Portal.jsp?page=htmlpage&query=";
+    private static final int BATCH_MAX_SIZE = 500;
+    private static final int [ ] BATCH_TASKS = {
+            IndexerAction.TASK_CREATE, IndexerAction.TASK_MODIFY
+    };
+
+    private final Map<Integer, HtmlPage> _mapBatch = new HashMap<>( );
 
     /**
      * Returns the indexer service description
@@ -137,7 +151,7 @@ public class HtmlPageIndexer implements SearchIndexer
         String strPortalUrl = AppPathService.getPortalUrl( );
         Plugin plugin = PluginService.getPlugin( HtmlPagePlugin.PLUGIN_NAME );
 
-        HtmlPage htmlpage = HtmlPageService.getInstance( ).getEnableHtmlPage( Integer.parseInt( strId ) );
+        HtmlPage htmlpage = getEnableHtmlPage( Integer.parseInt( strId ) );
         if ( htmlpage != null )
         {
             UrlItem url = new UrlItem( strPortalUrl );
@@ -162,6 +176,65 @@ public class HtmlPageIndexer implements SearchIndexer
         return listDocuments;
     }
 
+    /**
+     * Gets an enabled htmlpage to index incrementally. The first call of an indexing loads together the htmlpages of all the pending creations and
+     * modifications of this indexer, which are then used by the following calls of the same indexing. The next batch is loaded by the first call
+     * asking for a htmlpage which is not in the current one, that is by the next indexing or by an action added during this one.
+     * 
+     * @param nId
+     *            the htmlpage id
+     * @return the htmlpage, or null if it is not enabled
+     */
+    private synchronized HtmlPage getEnableHtmlPage( int nId )
+    {
+        if ( !_mapBatch.containsKey( nId ) )
+        {
+            loadBatch( nId );
+        }
+
+        // Each action uses the loaded htmlpage once. A htmlpage modified after the batch was loaded has a later action, which is processed after the
+        // action of the batch and loads the htmlpage again : the last indexed document is never outdated.
+        return _mapBatch.remove( nId );
+    }
+
+    /**
+     * Loads a htmlpage with the htmlpages of the other pending creations and modifications of this indexer, in a single round trip
+     * 
+     * @param nId
+     *            the htmlpage id
+     */
+    private void loadBatch( int nId )
+    {
+        Set<Integer> setIds = new LinkedHashSet<>( );
+        setIds.add( nId );
+
+        for ( int nIdTask : BATCH_TASKS )
+        {
+            IndexerActionFilter filter = new IndexerActionFilter( );
+            filter.setIdTask( nIdTask );
+            filter.setIndexerName( getName( ) );
+
+            for ( IndexerAction action : IndexerActionHome.getList( filter ) )
+            {
+                int nActionId = NumberUtils.toInt( action.getIdDocument( ), -1 );
+
+                if ( nActionId >= 0 && setIds.size( ) < BATCH_MAX_SIZE )
+                {
+                    setIds.add( nActionId );
+                }
+            }
+        }
+
+        Map<Integer, HtmlPage> mapHtmlPages = HtmlPageHome.findEnabledByPrimaryKeys( setIds, HtmlPagePlugin.getPlugin( ) );
+        _mapBatch.clear( );
+
+        for ( Integer nBatchId : setIds )
+        {
+            // The htmlpages which are not enabled are kept as null values
+            _mapBatch.put( nBatchId, mapHtmlPages.get( nBatchId ) );
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -286,7 +359,7 @@ public class HtmlPageIndexer implements SearchIndexer
 
         sbContentToIndex.append( " " );
 
-        sbContentToIndex.append( htmlpage.getHtmlContent( ) );
+        sbContentToIndex.append( HtmlPageService.getInstance( ).getHtmlContent( htmlpage ) );
 
         return sbContentToIndex.toString( );
     }
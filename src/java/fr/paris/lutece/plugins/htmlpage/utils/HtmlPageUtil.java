@@ -84,8 +84,17 @@ public class HtmlPageUtil
      */
     public static boolean isActivedPageHtml( HtmlPage htmlPage )
     {
-        Timestamp date = Timestamp.from( Instant.now( ) );
+        return isActivedPageHtml( htmlPage, Timestamp.from( Instant.now( ) ) );
+    }
 
+    /**
+     * Checks if the htmlpage could be shown at the given date
+     * @param htmlPage
+     * @param date the date
+     * @return true if the htmlpage could be shown at the given date
+     */
+    public static boolean isActivedPageHtml( HtmlPage htmlPage, Timestamp date )
+    {
         if ( htmlPage.getStatus( ) == EnumStatus.conditioned.getId( ) )
         {
             if ( htmlPage.getDateStart( ) != null && htmlPage.getDateEnd( ) != null )
@@ -101,7 +110,7 @@ public class HtmlPageUtil
 
         return htmlPage.getStatus( ) == EnumStatus.enabled.getId( );
     }
-    
+
     /**
      * Checks if htmlpage have role
      * @param strRole
@@ -111,6 +120,29 @@ public class HtmlPageUtil
     {
         return strRole != null && !strRole.trim( ).equals( EMPTY_STRING ) && !strRole.equals( HtmlPage.ROLE_NONE );
     }
+
+    /**
+     * Copies a htmlpage without its html content
+     * 
+     * @param htmlpage
+     *            the htmlpage
+     * @return the copy
+     */
+    public static HtmlPage getSummary( HtmlPage htmlpage )
+    {
+        HtmlPage summary = new HtmlPage( );
+        summary.setId( htmlpage.getId( ) );
+        summary.setDescription( htmlpage.getDescription( ) );
+        summary.setStatus( htmlpage.getStatus( ) );
+        summary.setWorkgroup( htmlpage.getWorkgroup( ) );
+        summary.setRole( htmlpage.getRole( ) );
+        summary.setDateStart( htmlpage.getDateStart( ) );
+        summary.setDateEnd( htmlpage.getDateEnd( ) );
+        summary.setVersion( htmlpage.getVersion( ) );
+        summary.setDateUpdate( htmlpage.getDateUpdate( ) );
+
+        return summary;
+    }
     
     /**
      * Convert to sql date
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.htmlpage.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Request scoped cache of the visibility of the htmlpage roles : the security service is called at most once per role and per request.
+ */
+public final class HtmlPageVisibilityContext
+{
+    private static final String ATTRIBUTE_CONTEXT = HtmlPageVisibilityContext.class.getName( );
+
+    private final HttpServletRequest _request;
+    private final Map<String, Boolean> _mapVisibleRoles = new HashMap<>( );
+
+    /**
+     * Constructor
+     * 
+     * @param request
+     *            The HTTP request
+     */
+    private HtmlPageVisibilityContext( HttpServletRequest request )
+    {
+        _request = request;
+    }
+
+    /**
+     * Gets the context of a request, creating it if needed
+     * 
+     * @param request
+     *            The HTTP request
+     * @return the context
+     */
+    public static HtmlPageVisibilityContext getContext( HttpServletRequest request )
+    {
+        HtmlPageVisibilityContext context = (HtmlPageVisibilityContext) request.getAttribute( ATTRIBUTE_CONTEXT );
+
+        if ( context == null )
+        {
+            context = new HtmlPageVisibilityContext( request );
+            request.setAttribute( ATTRIBUTE_CONTEXT, context );
+        }
+
+        return context;
+    }
+
+    /**
+     * Checks if the htmlpages of a role are visible for the current user
+     * 
+     * @param strRole
+     *            The role
+     * @return true if the htmlpages of the role could be shown to the user
+     */
+    public boolean isVisible( String strRole )
+    {
+        return _mapVisibleRoles.computeIfAbsent( strRole, strKey -> HtmlPageUtil.isVisible( _request, strKey ) );
+    }
+}
@@ -35,7 +35,8 @@ package fr.paris.lutece.plugins.htmlpage.web;
 
 import fr.paris.lutece.plugins.htmlpage.business.HtmlPage;
 import fr.paris.lutece.plugins.htmlpage.service.HtmlPageService;
-import fr.paris.lutece.plugins.htmlpage.utils.HtmlPageUtil;
+import fr.paris.lutece.plugins.htmlpage.service.PublicHtmlPageCacheService;
+import fr.paris.lutece.plugins.htmlpage.utils.HtmlPageVisibilityContext;
 import fr.paris.lutece.portal.service.message.SiteMessage;
 import fr.paris.lutece.portal.service.message.SiteMessageException;
 import fr.paris.lutece.portal.service.message.SiteMessageService;
@@ -46,14 +47,15 @@ import fr.paris.lutece.portal.service.search.SearchResult;
 import fr.paris.lutece.portal.service.spring.SpringContextService;
 import fr.paris.lutece.portal.service.template.AppTemplateService;
 import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import fr.paris.lutece.portal.web.l10n.LocaleService;
 import fr.paris.lutece.portal.web.xpages.XPage;
 import fr.paris.lutece.portal.web.xpages.XPageApplication;
 import fr.paris.lutece.util.html.HtmlTemplate;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -167,16 +169,9 @@ public class HtmlPageApp implements XPageApplication
     {
         HashMap<String, Object> model = new HashMap<String, Object>( );
 
-        Collection<HtmlPage> htmlPageList = HtmlPageService.getInstance( ).getHtmlPageListCache( );
-        Collection<HtmlPage> visibleHtmlPageList = new ArrayList<HtmlPage>( ); // filter the list of lists by role
-
-        for ( HtmlPage htmlpage : htmlPageList )
-        {
-            if( HtmlPageUtil.isVisible( request, htmlpage.getRole( ) ) )
-            {
-                visibleHtmlPageList.add( htmlpage );
-            }
-        }
+        // filter the list of lists by role
+        HtmlPageVisibilityContext context = HtmlPageVisibilityContext.getContext( request );
+        Collection<HtmlPage> visibleHtmlPageList = HtmlPageService.getInstance( ).getSnapshot( ).getHtmlPageList( context::isVisible );
 
         model.put( MARK_HTMLPAGE_LIST, visibleHtmlPageList );
 
@@ -203,15 +198,28 @@ public class HtmlPageApp implements XPageApplication
 
         if ( htmlpage != null )
         {
-            if ( HtmlPageUtil.isVisible( request, htmlpage.getRole( ) ) )
+            if ( HtmlPageVisibilityContext.getContext( request ).isVisible( htmlpage.getRole( ) ) )
             {
-                model.put( MARK_HTMLPAGE, htmlpage );
+                // The rendering only depends on the htmlpage version, on the template and on the language, cached for one of the locales of the portal
+                PublicHtmlPageCacheService cacheService = PublicHtmlPageCacheService.getService( );
+                Locale locale = getSupportedLocale( request.getLocale( ) );
+                String strHtml = cacheService.getRenderedHtmlPage( htmlpage, TEMPLATE_XPAGE_HTMLPAGE, locale );
+
+                if ( strHtml != null )
+                {
+                    return strHtml;
+                }
+
+                model.put( MARK_HTMLPAGE, HtmlPageService.getInstance( ).getHtmlPageWithContent( htmlpage ) );
                 model.put( MARK_PAGE, _plugin.getName( ) );
+
+                strHtml = AppTemplateService.getTemplate( TEMPLATE_XPAGE_HTMLPAGE, request.getLocale( ), model ).getHtml( );
+                cacheService.putRenderedHtmlPage( htmlpage, TEMPLATE_XPAGE_HTMLPAGE, locale, strHtml );
+
+                return strHtml;
             }
-            else
-            {
-                SiteMessageService.setMessage( request, PROPERTY_MESSAGE_NOT_AUTHORIZED, SiteMessage.TYPE_ERROR );
-            }
+
+            SiteMessageService.setMessage( request, PROPERTY_MESSAGE_NOT_AUTHORIZED, SiteMessage.TYPE_ERROR );
         }
         else
         {
@@ -222,4 +230,28 @@ public class HtmlPageApp implements XPageApplication
 
         return template.getHtml( );
     }
+
+    /**
+     * Gets the locale of the portal a rendering is cached for. The messages of the templates are resolved by language, the ones of the other
+     * languages falling back to the default locale.
+     * 
+     * @param locale
+     *            The locale of the request
+     * @return the supported locale of the same language, or the default locale of the portal
+     */
+    private static Locale getSupportedLocale( Locale locale )
+    {
+        if ( locale != null )
+        {
+            for ( Locale supportedLocale : LocaleService.getSupportedLangueLocales( ) )
+            {
+                if ( supportedLocale.getLanguage( ).equals( locale.getLanguage( ) ) )
+                {
+                    return supportedLocale;
+                }
+            }
+        }
+
+        return LocaleService.getDefault( );
+    }
 }
@@ -34,13 +34,17 @@
 package fr.paris.lutece.plugins.htmlpage.web;
 
 import fr.paris.lutece.plugins.htmlpage.business.HtmlPage;
+import fr.paris.lutece.plugins.htmlpage.service.HtmlPageContentCache;
 import fr.paris.lutece.plugins.htmlpage.service.HtmlPageService;
-import fr.paris.lutece.plugins.htmlpage.utils.HtmlPageUtil;
+import fr.paris.lutece.plugins.htmlpage.service.HtmlPageTemplateMarkerIndex;
+import fr.paris.lutece.plugins.htmlpage.utils.HtmlPageVisibilityContext;
 import fr.paris.lutece.portal.service.content.PageData;
 import fr.paris.lutece.portal.service.includes.PageInclude;
 import fr.paris.lutece.portal.service.util.AppPropertiesService;
 
+import java.util.Collection;
 import java.util.Map;
+import java.util.Set;
 import javax.servlet.http.HttpServletRequest;
 
 /**
@@ -58,7 +62,7 @@ public class HtmlPageInclude implements PageInclude
     private static final String PROPERTY_ENABLE_API_REST = "htmlpage.page_include.api_rest.enable";
 
     private static boolean _bEnableApiRest =  AppPropertiesService.getPropertyBoolean( PROPERTY_ENABLE_API_REST, false );
-    
+
     /**
      * Substitue specific Freemarker markers in the page template.
      * 
@@ -75,14 +79,42 @@ public class HtmlPageInclude implements PageInclude
     {
         if ( !_bEnableApiRest && request != null )
         {
-            for ( HtmlPage htmlpage : HtmlPageService.getInstance( ).getHtmlPageListCache( ) )
+            fillRequiredMarkers( rootModel, request );
+        }
+    }
+
+    /**
+     * Substitute only the markers referenced by the page frameset template, which is the one rendered with the include markers. The work done per
+     * request only depends on the number of referenced markers, not on the number of published htmlpages. If the frameset is not scanned, the markers
+     * of all the published htmlpages are substituted. When the contents have their own cache, the markers load their content only if the template
+     * reads them.
+     * 
+     * @param rootModel
+     *            the HashMap containing markers to substitute
+     * @param request
+     *            The HTTP request
+     */
+    private static void fillRequiredMarkers( Map<String, Object> rootModel, HttpServletRequest request )
+    {
+        Set<Integer> setRequiredIds = HtmlPageTemplateMarkerIndex.getInstance( ).getRequiredIds( HtmlPageTemplateMarkerIndex.getFramesetTemplate( ) );
+
+        if ( setRequiredIds != null && setRequiredIds.isEmpty( ) )
+        {
+            return;
+        }
+
+        Collection<HtmlPage> listHtmlPages = ( setRequiredIds == null ) ? HtmlPageService.getInstance( ).getHtmlPageListCache( )
+                : HtmlPageService.getInstance( ).getHtmlPagesCache( setRequiredIds ).values( );
+        HtmlPageVisibilityContext context = HtmlPageVisibilityContext.getContext( request );
+        boolean bContentCache = HtmlPageContentCache.getInstance( ).isEnabled( );
+
+        for ( HtmlPage htmlpage : listHtmlPages )
+        {
+            // The markers of the htmlpages the user can't see are left undefined
+            if ( context.isVisible( htmlpage.getRole( ) ) )
             {
-                if( HtmlPageUtil.isVisible( request, htmlpage.getRole( ) ) )
-                {
-                    rootModel.put( MARK_HTMLPAGE_MARKER_PREFIX + htmlpage.getId( ), htmlpage.getHtmlContent( ) );
-                }
+                rootModel.put( MARK_HTMLPAGE_MARKER_PREFIX + htmlpage.getId( ), bContentCache ? new HtmlPageMarkerModel( htmlpage ) : htmlpage.getHtmlContent( ) );
             }
         }
     }
-
 }
@@ -34,6 +34,7 @@
 package fr.paris.lutece.plugins.htmlpage.web;
 
 import fr.paris.lutece.plugins.htmlpage.business.HtmlPage;
+import fr.paris.lutece.plugins.htmlpage.business.HtmlPageFilter;
 import fr.paris.lutece.plugins.htmlpage.business.HtmlPageHome;
 import fr.paris.lutece.plugins.htmlpage.service.EnumStatus;
 import fr.paris.lutece.plugins.htmlpage.utils.HtmlPageUtil;
@@ -46,20 +47,23 @@ import fr.paris.lutece.portal.service.util.AppPropertiesService;
 import fr.paris.lutece.portal.service.workgroup.AdminWorkgroupService;
 import fr.paris.lutece.portal.web.admin.PluginAdminPageJspBean;
 import fr.paris.lutece.portal.web.constants.Messages;
+import fr.paris.lutece.util.ReferenceItem;
 import fr.paris.lutece.util.ReferenceList;
+import fr.paris.lutece.util.html.DelegatePaginator;
 import fr.paris.lutece.util.html.HtmlTemplate;
 import fr.paris.lutece.util.html.Paginator;
 import fr.paris.lutece.util.url.UrlItem;
 
 import java.sql.Timestamp;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import javax.servlet.http.HttpServletRequest;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 
 /**
  *
@@ -138,11 +142,25 @@ public class HtmlPageJspBean extends PluginAdminPageJspBean
         _nDefaultItemsPerPage = AppPropertiesService.getPropertyInt( PROPERTY_DEFAULT_HTMLPAGE_LIST_PER_PAGE, 50 );
         _nItemsPerPage = Paginator.getItemsPerPage( request, Paginator.PARAMETER_ITEMS_PER_PAGE, _nItemsPerPage, _nDefaultItemsPerPage );
 
-        Collection<HtmlPage> listHtmlPageList = HtmlPageHome.findAll( getPlugin( ) );
-        listHtmlPageList = AdminWorkgroupService.getAuthorizedCollection( listHtmlPageList, getUser( ) );
+        // Only the rows of the current page are loaded, restricted to the workgroups of the user
+        HtmlPageFilter filter = new HtmlPageFilter( );
+        filter.setWorkgroupKeys( AdminWorkgroupService.getUserWorkgroups( getUser( ), getLocale( ) ).stream( ).map( ReferenceItem::getCode )
+                .collect( Collectors.toList( ) ) );
 
-        Paginator paginator = new Paginator( (List<HtmlPage>) listHtmlPageList, _nItemsPerPage, getHomeUrl( request ), PARAMETER_PAGE_INDEX,
-                _strCurrentPageIndex );
+        int nItemsCount = HtmlPageHome.countByFilter( filter, getPlugin( ) );
+
+        // A page index beyond the last page (after removals for instance) shows the last page
+        int nPageCount = Math.max( 1, ( nItemsCount + _nItemsPerPage - 1 ) / _nItemsPerPage );
+        int nPageIndex = Math.min( nPageCount, Math.max( 1, NumberUtils.toInt( _strCurrentPageIndex, 1 ) ) );
+        _strCurrentPageIndex = String.valueOf( nPageIndex );
+
+        filter.setOffset( ( nPageIndex - 1 ) * _nItemsPerPage );
+        filter.setLimit( _nItemsPerPage );
+
+        List<HtmlPage> listHtmlPageList = HtmlPageHome.findSummariesByFilter( filter, getPlugin( ) );
+
+        DelegatePaginator<HtmlPage> paginator = new DelegatePaginator<>( listHtmlPageList, _nItemsPerPage, getHomeUrl( request ), PARAMETER_PAGE_INDEX,
+                _strCurrentPageIndex, nItemsCount );
 
         Map<String, Object> model = new HashMap<String, Object>( );
         model.put( MARK_NB_ITEMS_PER_PAGE, "" + _nItemsPerPage );
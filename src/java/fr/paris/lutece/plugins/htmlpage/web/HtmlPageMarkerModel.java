@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.htmlpage.web;
+
+import fr.paris.lutece.plugins.htmlpage.business.HtmlPage;
+import fr.paris.lutece.plugins.htmlpage.service.HtmlPageService;
+
+import freemarker.template.TemplateScalarModel;
+
+/**
+ * Freemarker model of a htmlpage_&lt;id&gt; marker for a htmlpage whose content is not kept in memory. The content is only loaded if the template reads
+ * the marker. The marker is only put in the model if the user can see the htmlpage.
+ */
+public class HtmlPageMarkerModel implements TemplateScalarModel
+{
+    private final HtmlPage _htmlPage;
+    private String _strValue;
+
+    /**
+     * Constructor
+     * 
+     * @param htmlPage
+     *            The htmlpage
+     */
+    public HtmlPageMarkerModel( HtmlPage htmlPage )
+    {
+        _htmlPage = htmlPage;
+    }
+
+    /**
+     * {@inheritDoc} The value is empty if the htmlpage has no content.
+     */
+    @Override
+    public String getAsString( )
+    {
+        if ( _strValue == null )
+        {
+            _strValue = HtmlPageService.getInstance( ).getHtmlContent( _htmlPage );
+        }
+
+        return _strValue;
+    }
+}
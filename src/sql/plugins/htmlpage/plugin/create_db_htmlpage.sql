@@ -6,6 +6,8 @@
 --
 
 DROP TABLE IF EXISTS htmlpage;
+DROP TABLE IF EXISTS htmlpage_version;
+DROP TABLE IF EXISTS htmlpage_changelog;
 CREATE TABLE htmlpage (
   id_htmlpage INT AUTO_INCREMENT,
   description varchar(255) DEFAULT '' NOT NULL,
@@ -15,5 +17,34 @@ CREATE TABLE htmlpage (
   role varchar(50) DEFAULT 'none' NOT NULL,  
   date_start TIMESTAMP NULL,
   date_end TIMESTAMP NULL,
+  version BIGINT DEFAULT 0 NOT NULL,
+  date_update TIMESTAMP NULL,
   PRIMARY KEY (id_htmlpage)
-);
\ No newline at end of file
+);
+
+CREATE INDEX idx_htmlpage_status_dates ON htmlpage ( status, date_start, date_end );
+CREATE INDEX idx_htmlpage_description ON htmlpage ( description );
+CREATE INDEX idx_htmlpage_workgroup ON htmlpage ( workgroup_key, description );
+
+--
+-- Structure for table htmlpage_version : global change counter of the htmlpages
+--
+
+CREATE TABLE htmlpage_version (
+  version BIGINT DEFAULT 0 NOT NULL
+);
+
+INSERT INTO htmlpage_version ( version ) VALUES ( 0 );
+
+--
+-- Structure for table htmlpage_changelog : changes of the htmlpages read by the other nodes of a cluster
+--
+
+CREATE TABLE htmlpage_changelog (
+  id_change BIGINT AUTO_INCREMENT,
+  id_htmlpage INT NOT NULL,
+  date_change TIMESTAMP NOT NULL,
+  PRIMARY KEY (id_change)
+);
+
+CREATE INDEX idx_htmlpage_changelog_date ON htmlpage_changelog ( date_change );
@@ -0,0 +1,47 @@
+-- liquibase formatted sql
+-- changeset htmlpage:update_db_htmlpage-5.1.5-5.1.6.sql
+-- preconditions onFail:MARK_RAN onError:WARN
+--
+-- Index used by the queries of the enabled htmlpages (status and activation window)
+--
+
+CREATE INDEX idx_htmlpage_status_dates ON htmlpage ( status, date_start, date_end );
+
+-- changeset htmlpage:update_db_htmlpage-5.1.5-5.1.6.sql-access-paths
+-- preconditions onFail:MARK_RAN onError:WARN
+--
+-- Indexes used by the lists of htmlpages ordered by description and by the searches on workgroup
+--
+
+CREATE INDEX idx_htmlpage_description ON htmlpage ( description );
+CREATE INDEX idx_htmlpage_workgroup ON htmlpage ( workgroup_key, description );
+
+-- changeset htmlpage:update_db_htmlpage-5.1.5-5.1.6.sql-version
+-- preconditions onFail:MARK_RAN onError:WARN
+--
+-- Version and date of the last modification of the htmlpages, and global change counter
+--
+
+ALTER TABLE htmlpage ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE htmlpage ADD COLUMN date_update TIMESTAMP NULL;
+
+CREATE TABLE htmlpage_version (
+  version BIGINT DEFAULT 0 NOT NULL
+);
+
+INSERT INTO htmlpage_version ( version ) VALUES ( 0 );
+
+-- changeset htmlpage:update_db_htmlpage-5.1.5-5.1.6.sql-changelog
+-- preconditions onFail:MARK_RAN onError:WARN
+--
+-- Changes of the htmlpages read by the other nodes of a cluster
+--
+
+CREATE TABLE htmlpage_changelog (
+  id_change BIGINT AUTO_INCREMENT,
+  id_htmlpage INT NOT NULL,
+  date_change TIMESTAMP NOT NULL,
+  PRIMARY KEY (id_change)
+);
+
+CREATE INDEX idx_htmlpage_changelog_date ON htmlpage_changelog ( date_change );
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.htmlpage.business;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import fr.paris.lutece.plugins.htmlpage.service.HtmlPagePlugin;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Tests of the change log of the htmlpages
+ */
+public class HtmlPageChangeLogTest extends LuteceTestCase
+{
+    private static final int ID_HTMLPAGE_1 = 1;
+    private static final int ID_HTMLPAGE_2 = 2;
+
+    /**
+     * Test of the insertion, selection and removal of the changes
+     */
+    public void testChangeLog( )
+    {
+        Plugin plugin = HtmlPagePlugin.getPlugin( );
+        HtmlPageDAO dao = new HtmlPageDAO( );
+        long lLastIdChange = HtmlPageHome.getLastChangeLogId( plugin );
+
+        dao.insertChangeLog( ID_HTMLPAGE_1, plugin );
+        dao.insertChangeLog( ID_HTMLPAGE_2, plugin );
+
+        Map<Long, Integer> mapChanges = HtmlPageHome.findChangeLog( lLastIdChange, plugin );
+        List<Long> listIdChanges = new ArrayList<>( mapChanges.keySet( ) );
+
+        assertEquals( 2, mapChanges.size( ) );
+        assertTrue( listIdChanges.get( 0 ) < listIdChanges.get( 1 ) );
+        assertEquals( Integer.valueOf( ID_HTMLPAGE_1 ), mapChanges.get( listIdChanges.get( 0 ) ) );
+        assertEquals( Integer.valueOf( ID_HTMLPAGE_2 ), mapChanges.get( listIdChanges.get( 1 ) ) );
+        assertEquals( listIdChanges.get( 1 ).longValue( ), HtmlPageHome.getLastChangeLogId( plugin ) );
+        assertTrue( HtmlPageHome.getFirstChangeLogId( plugin ) <= listIdChanges.get( 0 ) );
+        assertTrue( HtmlPageHome.findChangeLog( listIdChanges.get( 1 ), plugin ).isEmpty( ) );
+
+        HtmlPageHome.removeChangeLog( new Timestamp( System.currentTimeMillis( ) + 60000L ), plugin );
+
+        assertTrue( HtmlPageHome.findChangeLog( 0, plugin ).isEmpty( ) );
+        assertEquals( 0L, HtmlPageHome.getFirstChangeLogId( plugin ) );
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.htmlpage.rs;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Variant;
+
+import fr.paris.lutece.plugins.htmlpage.business.HtmlPage;
+import fr.paris.lutece.plugins.htmlpage.utils.HtmlPageTestUtils;
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Tests of the htmlpages served by the REST API to anonymous users and to users holding a role
+ */
+public class HtmlPageRestTest extends LuteceTestCase
+{
+    private static final Integer VERSION = 1;
+    private static final String CACHE_CONTROL_PRIVATE = "private";
+
+    private HtmlPage _htmlPagePublic;
+    private HtmlPage _htmlPageRole;
+    private File _fileAuthentication;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp( ) throws Exception
+    {
+        super.setUp( );
+        _fileAuthentication = HtmlPageTestUtils.enableAuthentication( getResourcesDir( ) );
+        _htmlPagePublic = HtmlPageTestUtils.createHtmlPage( "htmlpage_test_public", HtmlPage.ROLE_NONE );
+        _htmlPageRole = HtmlPageTestUtils.createHtmlPage( "htmlpage_test_role", HtmlPageTestUtils.ROLE );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void tearDown( ) throws Exception
+    {
+        try
+        {
+            HtmlPageTestUtils.removeHtmlPage( _htmlPagePublic );
+            HtmlPageTestUtils.removeHtmlPage( _htmlPageRole );
+        }
+        finally
+        {
+            HtmlPageTestUtils.disableAuthentication( _fileAuthentication );
+            super.tearDown( );
+        }
+    }
+
+    /**
+     * Test of the htmlpages served to an anonymous user
+     */
+    public void testGetHtmlPageAnonymous( )
+    {
+        Response response = getHtmlPage( HtmlPageTestUtils.getAnonymousRequest( ), _htmlPagePublic, null );
+
+        assertEquals( Response.Status.OK.getStatusCode( ), response.getStatus( ) );
+        assertTrue( String.valueOf( response.getEntity( ) ).contains( _htmlPagePublic.getDescription( ) ) );
+        assertFalse( response.getHeaderString( HttpHeaders.CACHE_CONTROL ).contains( CACHE_CONTROL_PRIVATE ) );
+
+        response = getHtmlPage( HtmlPageTestUtils.getAnonymousRequest( ), _htmlPageRole, null );
+
+        assertEquals( Response.Status.NOT_FOUND.getStatusCode( ), response.getStatus( ) );
+    }
+
+    /**
+     * Test of the default htmlpage served to an anonymous user instead of a htmlpage restricted to a role : the response depends on the user
+     */
+    public void testGetHtmlPageDefault( )
+    {
+        Response response = getHtmlPage( HtmlPageTestUtils.getAnonymousRequest( ), _htmlPageRole, _htmlPagePublic );
+
+        assertEquals( Response.Status.OK.getStatusCode( ), response.getStatus( ) );
+        assertTrue( String.valueOf( response.getEntity( ) ).contains( _htmlPagePublic.getDescription( ) ) );
+        assertTrue( response.getHeaderString( HttpHeaders.CACHE_CONTROL ).contains( CACHE_CONTROL_PRIVATE ) );
+        assertEquals( _htmlPagePublic.getDateUpdate( ).getTime( ) / 1000, response.getLastModified( ).getTime( ) / 1000 );
+    }
+
+    /**
+     * Test of the htmlpages served to a user holding the role
+     */
+    public void testGetHtmlPageRole( )
+    {
+        Response response = getHtmlPage( HtmlPageTestUtils.getRoleRequest( ), _htmlPageRole, null );
+
+        assertEquals( Response.Status.OK.getStatusCode( ), response.getStatus( ) );
+        assertTrue( String.valueOf( response.getEntity( ) ).contains( _htmlPageRole.getDescription( ) ) );
+        assertTrue( response.getHeaderString( HttpHeaders.CACHE_CONTROL ).contains( CACHE_CONTROL_PRIVATE ) );
+    }
+
+    /**
+     * Test of the batch of htmlpages served to an anonymous user and to a user holding the role
+     */
+    public void testGetHtmlPages( )
+    {
+        List<String> listIds = Arrays.asList( String.valueOf( _htmlPagePublic.getId( ) ), String.valueOf( _htmlPageRole.getId( ) ) );
+
+        Response response = new HtmlPageRest( ).getHtmlPages( VERSION, listIds, Collections.emptyList( ), HtmlPageTestUtils.getAnonymousRequest( ), new TestRequest( ) );
+
+        assertEquals( Response.Status.OK.getStatusCode( ), response.getStatus( ) );
+        assertTrue( String.valueOf( response.getEntity( ) ).contains( _htmlPagePublic.getDescription( ) ) );
+        assertFalse( String.valueOf( response.getEntity( ) ).contains( _htmlPageRole.getDescription( ) ) );
+
+        response = new HtmlPageRest( ).getHtmlPages( VERSION, listIds, Collections.emptyList( ), HtmlPageTestUtils.getRoleRequest( ), new TestRequest( ) );
+
+        assertEquals( Response.Status.OK.getStatusCode( ), response.getStatus( ) );
+        assertTrue( String.valueOf( response.getEntity( ) ).contains( _htmlPageRole.getDescription( ) ) );
+        assertTrue( response.getHeaderString( HttpHeaders.CACHE_CONTROL ).contains( CACHE_CONTROL_PRIVATE ) );
+    }
+
+    /**
+     * Get a htmlpage from the REST API
+     * 
+     * @param request
+     *            The request
+     * @param htmlPage
+     *            The htmlpage
+     * @param htmlPageDefault
+     *            The default htmlpage, or null
+     * @return the response
+     */
+    private static Response getHtmlPage( HttpServletRequest request, HtmlPage htmlPage, HtmlPage htmlPageDefault )
+    {
+        String strIdDefault = ( htmlPageDefault == null ) ? null : String.valueOf( htmlPageDefault.getId( ) );
+
+        return new HtmlPageRest( ).getHtmlPage( VERSION, String.valueOf( htmlPage.getId( ) ), strIdDefault, request, new TestRequest( ) );
+    }
+
+    /**
+     * JAX-RS request without preconditions
+     */
+    private static final class TestRequest implements Request
+    {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getMethod( )
+        {
+            return "GET";
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Variant selectVariant( List<Variant> variants )
+        {
+            return null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Response.ResponseBuilder evaluatePreconditions( EntityTag eTag )
+        {
+            return null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Response.ResponseBuilder evaluatePreconditions( Date lastModified )
+        {
+            return null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Response.ResponseBuilder evaluatePreconditions( Date lastModified, EntityTag eTag )
+        {
+            return null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Response.ResponseBuilder evaluatePreconditions( )
+        {
+            return null;
+        }
+    }
+}
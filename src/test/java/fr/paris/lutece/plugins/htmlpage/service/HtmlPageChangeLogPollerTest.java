@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.htmlpage.service;
+
+import java.sql.Timestamp;
+
+import fr.paris.lutece.plugins.htmlpage.business.HtmlPage;
+import fr.paris.lutece.plugins.htmlpage.business.HtmlPageDAO;
+import fr.paris.lutece.plugins.htmlpage.business.HtmlPageHome;
+import fr.paris.lutece.plugins.htmlpage.utils.HtmlPageTestUtils;
+import fr.paris.lutece.portal.service.plugin.Plugin;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import fr.paris.lutece.test.LuteceTestCase;
+import fr.paris.lutece.util.sql.DAOUtil;
+
+/**
+ * Tests of the poller of the change log : the htmlpages are modified in the database as by another node, then the change log is polled
+ */
+public class HtmlPageChangeLogPollerTest extends LuteceTestCase
+{
+    private static final String SQL_QUERY_INSERT_CHANGELOG = "INSERT INTO htmlpage_changelog ( id_change, id_htmlpage, date_change ) VALUES ( ?, ?, ? ) ";
+    private static final String PROPERTY_RETENTION = "htmlpage.changelog.retention";
+    private static final String SQL_QUERY_DELETE_CHANGELOG = "DELETE FROM htmlpage_changelog WHERE id_change = ? ";
+
+    private final HtmlPageDAO _dao = new HtmlPageDAO( );
+    private Plugin _plugin;
+    private HtmlPage _htmlPage;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp( ) throws Exception
+    {
+        super.setUp( );
+        _plugin = HtmlPagePlugin.getPlugin( );
+        _htmlPage = HtmlPageTestUtils.createHtmlPage( "htmlpage_test_poller", HtmlPage.ROLE_NONE );
+
+        // The change log holds the last change read by the poller
+        _dao.insertChangeLog( _htmlPage.getId( ), _plugin );
+        HtmlPageChangeLogPoller.getInstance( ).init( _plugin );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void tearDown( ) throws Exception
+    {
+        HtmlPageTestUtils.removeHtmlPage( _htmlPage );
+        super.tearDown( );
+    }
+
+    /**
+     * Test of a change read by the poller
+     */
+    public void testPoll( )
+    {
+        storeDescription( "htmlpage_test_poller_modified" );
+        _dao.insertChangeLog( _htmlPage.getId( ), _plugin );
+        HtmlPageChangeLogPoller.getInstance( ).poll( );
+
+        assertEquals( "htmlpage_test_poller_modified", getPublishedDescription( ) );
+    }
+
+    /**
+     * Test of a change committed after a following change has been read
+     */
+    public void testLateChange( )
+    {
+        _dao.insertChangeLog( _htmlPage.getId( ), _plugin );
+        long lIdLateChange = HtmlPageHome.getLastChangeLogId( _plugin );
+        _dao.insertChangeLog( _htmlPage.getId( ), _plugin );
+
+        // The first change is not committed yet when the second one is read
+        executeChangeLog( SQL_QUERY_DELETE_CHANGELOG, lIdLateChange );
+        HtmlPageChangeLogPoller.getInstance( ).poll( );
+
+        storeDescription( "htmlpage_test_poller_late" );
+        insertChangeLog( lIdLateChange );
+        HtmlPageChangeLogPoller.getInstance( ).poll( );
+
+        assertEquals( "htmlpage_test_poller_late", getPublishedDescription( ) );
+    }
+
+    /**
+     * Test of changes purged before being read
+     */
+    public void testPurgedChanges( )
+    {
+        long lLastIdChange = HtmlPageHome.getLastChangeLogId( _plugin );
+
+        storeDescription( "htmlpage_test_poller_purged" );
+        HtmlPageHome.removeChangeLog( new Timestamp( System.currentTimeMillis( ) + 60000L ), _plugin );
+        insertChangeLog( lLastIdChange + 10 );
+
+        // The changes can only have been purged if the node has not polled for half the retention
+        long lRetention = AppPropertiesService.getPropertyInt( PROPERTY_RETENTION, 3600 ) * 1000L;
+        HtmlPageChangeLogPoller.getInstance( ).poll( System.currentTimeMillis( ) + lRetention );
+
+        assertEquals( "htmlpage_test_poller_purged", getPublishedDescription( ) );
+    }
+
+    /**
+     * Test of a hole in the identifiers of the changes, which is not a purge
+     */
+    public void testHole( )
+    {
+        long lLastIdChange = HtmlPageHome.getLastChangeLogId( _plugin );
+
+        storeDescription( "htmlpage_test_poller_hole" );
+        HtmlPageHome.removeChangeLog( new Timestamp( System.currentTimeMillis( ) + 60000L ), _plugin );
+        insertChangeLog( lLastIdChange + 10 );
+        HtmlPageChangeLogPoller.getInstance( ).poll( );
+
+        assertEquals( "htmlpage_test_poller_hole", getPublishedDescription( ) );
+    }
+
+    /**
+     * Modifies the description of the htmlpage in the database only, as another node would do
+     * 
+     * @param strDescription
+     *            The description
+     */
+    private void storeDescription( String strDescription )
+    {
+        HtmlPage htmlPage = HtmlPageHome.findByPrimaryKey( _htmlPage.getId( ), _plugin );
+        htmlPage.setDescription( strDescription );
+        htmlPage.setVersion( htmlPage.getVersion( ) + 1 );
+        _dao.store( htmlPage, _plugin );
+    }
+
+    /**
+     * Get the description of the published htmlpage
+     * 
+     * @return the description
+     */
+    private String getPublishedDescription( )
+    {
+        return HtmlPageService.getInstance( ).getHtmlPageCache( _htmlPage.getId( ) ).getDescription( );
+    }
+
+    /**
+     * Appends a change of the htmlpage with a given identifier
+     * 
+     * @param lIdChange
+     *            The identifier of the change
+     */
+    private void insertChangeLog( long lIdChange )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT_CHANGELOG, _plugin ) )
+        {
+            daoUtil.setLong( 1, lIdChange );
+            daoUtil.setInt( 2, _htmlPage.getId( ) );
+            daoUtil.setTimestamp( 3, new Timestamp( System.currentTimeMillis( ) ) );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * Executes a statement on a change
+     * 
+     * @param strQuery
+     *            The statement
+     * @param lIdChange
+     *            The identifier of the change
+     */
+    private void executeChangeLog( String strQuery, long lIdChange )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( strQuery, _plugin ) )
+        {
+            daoUtil.setLong( 1, lIdChange );
+            daoUtil.executeUpdate( );
+        }
+    }
+}
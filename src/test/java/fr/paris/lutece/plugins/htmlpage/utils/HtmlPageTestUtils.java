@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.htmlpage.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import fr.paris.lutece.plugins.htmlpage.business.HtmlPage;
+import fr.paris.lutece.plugins.htmlpage.business.HtmlPageHome;
+import fr.paris.lutece.plugins.htmlpage.service.EnumStatus;
+import fr.paris.lutece.plugins.htmlpage.service.HtmlPagePlugin;
+import fr.paris.lutece.portal.service.security.SecurityService;
+import fr.paris.lutece.portal.service.util.AppPathService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import fr.paris.lutece.portal.service.workgroup.AdminWorkgroupService;
+
+/**
+ * Utilities of the tests : htmlpages restricted or not to a role, and requests of anonymous users or of users holding the role
+ */
+public final class HtmlPageTestUtils
+{
+    public static final String ROLE = "htmlpage_test_role";
+
+    private static final String PATH_OVERRIDE = "WEB-INF/conf/override";
+    private static final String PREFIX_AUTHENTICATION_PROPERTIES = "htmlpage_test_authentication";
+    private static final String SUFFIX_PROPERTIES = ".properties";
+    private static final String PATH_TEMPLATES = "path.templates";
+    private static final String PATH_TEST_TEMPLATES = "skin/plugins/htmlpage";
+    private static final String PREFIX_TEMPLATE = "htmlpage_test_template";
+    private static final String SUFFIX_TEMPLATE = ".html";
+    private static final String AUTHENTICATION_PROPERTIES = "mylutece.authentication.enable=true\nmylutece.authentication.class="
+            + HtmlPageTestAuthentication.class.getName( ) + "\n";
+
+    /**
+     * Private constructor
+     */
+    private HtmlPageTestUtils( )
+    {
+    }
+
+    /**
+     * Enables the authentication with the test users through a temporary override properties file, removed at the latest when the JVM exits
+     * 
+     * @param strResourcesDir
+     *            The directory of the test webapp
+     * @return the override properties file, to remove with {@link #disableAuthentication(File)}
+     * @throws IOException
+     *             if the properties can't be written
+     */
+    public static File enableAuthentication( String strResourcesDir ) throws IOException
+    {
+        File fileAuthentication = overrideProperties( strResourcesDir, PREFIX_AUTHENTICATION_PROPERTIES, AUTHENTICATION_PROPERTIES );
+        SecurityService.init( );
+
+        return fileAuthentication;
+    }
+
+    /**
+     * Removes the override properties file of the authentication and restores the authentication of the test webapp
+     * 
+     * @param fileAuthentication
+     *            The override properties file returned by {@link #enableAuthentication(String)}, may be null
+     * @throws IOException
+     *             if the properties can't be removed
+     */
+    public static void disableAuthentication( File fileAuthentication ) throws IOException
+    {
+        removeOverride( fileAuthentication );
+        SecurityService.init( );
+    }
+
+    /**
+     * Overrides properties through a temporary override properties file, removed at the latest when the JVM exits
+     * 
+     * @param strResourcesDir
+     *            The directory of the test webapp
+     * @param strPrefix
+     *            The prefix of the file name
+     * @param strProperties
+     *            The properties
+     * @return the override properties file, to remove with {@link #removeOverride(File)}
+     * @throws IOException
+     *             if the properties can't be written
+     */
+    public static File overrideProperties( String strResourcesDir, String strPrefix, String strProperties ) throws IOException
+    {
+        Path pathOverride = Files.createTempFile( new File( strResourcesDir, PATH_OVERRIDE ).toPath( ), strPrefix, SUFFIX_PROPERTIES );
+        File fileOverride = pathOverride.toFile( );
+        fileOverride.deleteOnExit( );
+        Files.write( pathOverride, strProperties.getBytes( StandardCharsets.UTF_8 ) );
+        AppPropertiesService.reloadAll( );
+
+        return fileOverride;
+    }
+
+    /**
+     * Removes an override properties file and reloads the properties
+     * 
+     * @param fileOverride
+     *            The override properties file returned by {@link #overrideProperties(String, String, String)}, may be null
+     * @throws IOException
+     *             if the properties can't be removed
+     */
+    public static void removeOverride( File fileOverride ) throws IOException
+    {
+        if ( fileOverride != null )
+        {
+            Files.deleteIfExists( fileOverride.toPath( ) );
+        }
+
+        AppPropertiesService.reloadAll( );
+    }
+
+    /**
+     * Creates a temporary template, removed at the latest when the JVM exits
+     * 
+     * @param strContent
+     *            The content of the template
+     * @return the path of the template, relative to the templates directory
+     * @throws IOException
+     *             if the template can't be written
+     */
+    public static String createTemplate( String strContent ) throws IOException
+    {
+        Path pathTemplate = Files.createTempFile( new File( AppPathService.getPath( PATH_TEMPLATES, PATH_TEST_TEMPLATES ) ).toPath( ), PREFIX_TEMPLATE,
+                SUFFIX_TEMPLATE );
+        pathTemplate.toFile( ).deleteOnExit( );
+        Files.write( pathTemplate, strContent.getBytes( StandardCharsets.UTF_8 ) );
+
+        return PATH_TEST_TEMPLATES + "/" + pathTemplate.getFileName( );
+    }
+
+    /**
+     * Removes a template created by {@link #createTemplate(String)}
+     * 
+     * @param strTemplate
+     *            The path of the template, relative to the templates directory, may be null
+     * @throws IOException
+     *             if the template can't be removed
+     */
+    public static void removeTemplate( String strTemplate ) throws IOException
+    {
+        if ( strTemplate != null )
+        {
+            Files.deleteIfExists( new File( AppPathService.getPath( PATH_TEMPLATES, strTemplate ) ).toPath( ) );
+        }
+    }
+
+    /**
+     * Creates a published htmlpage
+     * 
+     * @param strDescription
+     *            The description, also used in the content
+     * @param strRole
+     *            The role, or HtmlPage.ROLE_NONE
+     * @return the htmlpage
+     */
+    public static HtmlPage createHtmlPage( String strDescription, String strRole )
+    {
+        HtmlPage htmlPage = new HtmlPage( );
+        htmlPage.setDescription( strDescription );
+        htmlPage.setHtmlContent( getHtmlContent( strDescription ) );
+        htmlPage.setStatus( EnumStatus.enabled.getId( ) );
+        htmlPage.setRole( strRole );
+        htmlPage.setWorkgroupKey( AdminWorkgroupService.ALL_GROUPS );
+
+        return HtmlPageHome.create( htmlPage, HtmlPagePlugin.getPlugin( ) );
+    }
+
+    /**
+     * Removes a htmlpage created by a test
+     * 
+     * @param htmlPage
+     *            The htmlpage
+     */
+    public static void removeHtmlPage( HtmlPage htmlPage )
+    {
+        if ( htmlPage != null )
+        {
+            HtmlPageHome.remove( htmlPage, HtmlPagePlugin.getPlugin( ) );
+        }
+    }
+
+    /**
+     * Get the html content of the htmlpages created by the tests
+     * 
+     * @param strDescription
+     *            The description of the htmlpage
+     * @return the html content
+     */
+    public static String getHtmlContent( String strDescription )
+    {
+        return "<p>" + strDescription + "</p>";
+    }
+
+    /**
+     * Get a request of an anonymous user
+     * 
+     * @return the request
+     */
+    public static MockHttpServletRequest getAnonymousRequest( )
+    {
+        return new MockHttpServletRequest( );
+    }
+
+    /**
+     * Get a request of a user holding the test role
+     * 
+     * @return the request
+     */
+    public static MockHttpServletRequest getRoleRequest( )
+    {
+        MockHttpServletRequest request = new MockHttpServletRequest( );
+        registerUser( request );
+
+        return request;
+    }
+
+    /**
+     * Registers a user holding the test role in the session of a request
+     * 
+     * @param request
+     *            The request
+     */
+    private static void registerUser( HttpServletRequest request )
+    {
+        HtmlPageTestUser user = new HtmlPageTestUser( "htmlpage_test_user", new HtmlPageTestAuthentication( ) );
+        user.addRoles( Collections.singletonList( ROLE ) );
+        SecurityService.getInstance( ).registerUser( request, user );
+    }
+}
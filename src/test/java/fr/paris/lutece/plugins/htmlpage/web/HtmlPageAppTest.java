@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.htmlpage.web;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import fr.paris.lutece.plugins.htmlpage.business.HtmlPage;
+import fr.paris.lutece.plugins.htmlpage.service.HtmlPagePlugin;
+import fr.paris.lutece.plugins.htmlpage.service.HtmlPageService;
+import fr.paris.lutece.plugins.htmlpage.utils.HtmlPageTestUtils;
+import fr.paris.lutece.plugins.htmlpage.utils.HtmlPageVisibilityContext;
+import fr.paris.lutece.portal.service.message.SiteMessageException;
+import fr.paris.lutece.portal.web.xpages.XPage;
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Tests of the htmlpages shown by the xpage to anonymous users and to users holding a role
+ */
+public class HtmlPageAppTest extends LuteceTestCase
+{
+    private static final String PARAMETER_PAGE = "page";
+    private static final String PARAMETER_HTMLPAGE_ID = "htmlpage_id";
+
+    private HtmlPage _htmlPagePublic;
+    private HtmlPage _htmlPageRole;
+    private File _fileAuthentication;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp( ) throws Exception
+    {
+        super.setUp( );
+        _fileAuthentication = HtmlPageTestUtils.enableAuthentication( getResourcesDir( ) );
+        _htmlPagePublic = HtmlPageTestUtils.createHtmlPage( "htmlpage_test_public", HtmlPage.ROLE_NONE );
+        _htmlPageRole = HtmlPageTestUtils.createHtmlPage( "htmlpage_test_role", HtmlPageTestUtils.ROLE );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void tearDown( ) throws Exception
+    {
+        try
+        {
+            HtmlPageTestUtils.removeHtmlPage( _htmlPagePublic );
+            HtmlPageTestUtils.removeHtmlPage( _htmlPageRole );
+        }
+        finally
+        {
+            HtmlPageTestUtils.disableAuthentication( _fileAuthentication );
+            super.tearDown( );
+        }
+    }
+
+    /**
+     * Test of the xpage for an anonymous user
+     * 
+     * @throws SiteMessageException
+     *             if the public htmlpage is not shown
+     */
+    public void testXPageAnonymous( ) throws SiteMessageException
+    {
+        assertTrue( getXPage( HtmlPageTestUtils.getAnonymousRequest( ), _htmlPagePublic ).getContent( )
+                .contains( HtmlPageTestUtils.getHtmlContent( _htmlPagePublic.getDescription( ) ) ) );
+
+        try
+        {
+            getXPage( HtmlPageTestUtils.getAnonymousRequest( ), _htmlPageRole );
+            fail( "The htmlpage restricted to a role must not be shown to an anonymous user" );
+        }
+        catch( SiteMessageException e )
+        {
+            // The not authorized message is shown
+        }
+    }
+
+    /**
+     * Test of the xpage for a user holding the role
+     * 
+     * @throws SiteMessageException
+     *             if a htmlpage is not shown
+     */
+    public void testXPageRole( ) throws SiteMessageException
+    {
+        assertTrue( getXPage( HtmlPageTestUtils.getRoleRequest( ), _htmlPagePublic ).getContent( )
+                .contains( HtmlPageTestUtils.getHtmlContent( _htmlPagePublic.getDescription( ) ) ) );
+        assertTrue( getXPage( HtmlPageTestUtils.getRoleRequest( ), _htmlPageRole ).getContent( )
+                .contains( HtmlPageTestUtils.getHtmlContent( _htmlPageRole.getDescription( ) ) ) );
+    }
+
+    /**
+     * Test of the list of the htmlpages for an anonymous user and for a user holding the role
+     */
+    public void testList( )
+    {
+        assertFalse( getVisibleIds( HtmlPageTestUtils.getAnonymousRequest( ) ).contains( _htmlPageRole.getId( ) ) );
+        assertTrue( getVisibleIds( HtmlPageTestUtils.getAnonymousRequest( ) ).contains( _htmlPagePublic.getId( ) ) );
+        assertTrue( getVisibleIds( HtmlPageTestUtils.getRoleRequest( ) ).contains( _htmlPageRole.getId( ) ) );
+    }
+
+    /**
+     * Get the xpage of a htmlpage
+     * 
+     * @param request
+     *            The request
+     * @param htmlPage
+     *            The htmlpage
+     * @return the xpage
+     * @throws SiteMessageException
+     *             if the htmlpage is not shown
+     */
+    private static XPage getXPage( MockHttpServletRequest request, HtmlPage htmlPage ) throws SiteMessageException
+    {
+        request.addParameter( PARAMETER_PAGE, HtmlPagePlugin.PLUGIN_NAME );
+        request.addParameter( PARAMETER_HTMLPAGE_ID, String.valueOf( htmlPage.getId( ) ) );
+
+        return new HtmlPageApp( ).getPage( request, 0, HtmlPagePlugin.getPlugin( ) );
+    }
+
+    /**
+     * Get the ids of the htmlpages listed for the user of a request
+     * 
+     * @param request
+     *            The request
+     * @return the ids
+     */
+    private static Collection<Integer> getVisibleIds( MockHttpServletRequest request )
+    {
+        HtmlPageVisibilityContext context = HtmlPageVisibilityContext.getContext( request );
+        Collection<Integer> listIds = new ArrayList<>( );
+
+        for ( HtmlPage htmlPage : HtmlPageService.getInstance( ).getSnapshot( ).getHtmlPageList( context::isVisible ) )
+        {
+            listIds.add( htmlPage.getId( ) );
+        }
+
+        return listIds;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2002-2022, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.htmlpage.web;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import fr.paris.lutece.plugins.htmlpage.business.HtmlPage;
+import fr.paris.lutece.plugins.htmlpage.service.HtmlPageTemplateMarkerIndex;
+import fr.paris.lutece.plugins.htmlpage.utils.HtmlPageTestUtils;
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Tests of the htmlpage markers put by the include for anonymous users and for users holding a role
+ */
+public class HtmlPageIncludeTest extends LuteceTestCase
+{
+    private static final String MARK_HTMLPAGE_PREFIX = "htmlpage_";
+    private static final String PREFIX_FRAMESET_PROPERTIES = "htmlpage_test_frameset";
+    private static final String PROPERTY_FRAMESET = "htmlpage.page_include.frameset=";
+
+    private HtmlPage _htmlPagePublic;
+    private HtmlPage _htmlPageRole;
+    private File _fileAuthentication;
+    private File _fileFrameset;
+    private String _strTemplate;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setUp( ) throws Exception
+    {
+        super.setUp( );
+        _fileAuthentication = HtmlPageTestUtils.enableAuthentication( getResourcesDir( ) );
+        _htmlPagePublic = HtmlPageTestUtils.createHtmlPage( "htmlpage_test_public", HtmlPage.ROLE_NONE );
+        _htmlPageRole = HtmlPageTestUtils.createHtmlPage( "htmlpage_test_role", HtmlPageTestUtils.ROLE );
+
+        // Only the markers referenced by the page frameset are put in the model
+        _strTemplate = HtmlPageTestUtils.createTemplate( "${" + MARK_HTMLPAGE_PREFIX + _htmlPagePublic.getId( ) + "!}${" + MARK_HTMLPAGE_PREFIX
+                + _htmlPageRole.getId( ) + "!}" );
+        _fileFrameset = HtmlPageTestUtils.overrideProperties( getResourcesDir( ), PREFIX_FRAMESET_PROPERTIES, PROPERTY_FRAMESET + _strTemplate );
+        HtmlPageTemplateMarkerIndex.getInstance( ).reset( );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void tearDown( ) throws Exception
+    {
+        try
+        {
+            HtmlPageTestUtils.removeHtmlPage( _htmlPagePublic );
+            HtmlPageTestUtils.removeHtmlPage( _htmlPageRole );
+        }
+        finally
+        {
+            HtmlPageTestUtils.removeTemplate( _strTemplate );
+            HtmlPageTestUtils.removeOverride( _fileFrameset );
+            HtmlPageTemplateMarkerIndex.getInstance( ).reset( );
+            HtmlPageTestUtils.disableAuthentication( _fileAuthentication );
+            super.tearDown( );
+        }
+    }
+
+    /**
+     * Test of the markers put by the include for an anonymous user
+     */
+    public void testIncludeAnonymous( )
+    {
+        Map<String, Object> model = fillTemplate( HtmlPageTestUtils.getAnonymousRequest( ) );
+
+        assertTrue( model.containsKey( MARK_HTMLPAGE_PREFIX + _htmlPagePublic.getId( ) ) );
+        assertFalse( model.containsKey( MARK_HTMLPAGE_PREFIX + _htmlPageRole.getId( ) ) );
+    }
+
+    /**
+     * Test of the markers put by the include for a user holding the role
+     */
+    public void testIncludeRole( )
+    {
+        Map<String, Object> model = fillTemplate( HtmlPageTestUtils.getRoleRequest( ) );
+
+        assertTrue( model.containsKey( MARK_HTMLPAGE_PREFIX + _htmlPagePublic.getId( ) ) );
+        assertEquals( HtmlPageTestUtils.getHtmlContent( _htmlPageRole.getDescription( ) ),
+                String.valueOf( model.get( MARK_HTMLPAGE_PREFIX + _htmlPageRole.getId( ) ) ) );
+    }
+
+    /**
+     * Fills a page model with the include
+     * 
+     * @param request
+     *            The request
+     * @return the model
+     */
+    private static Map<String, Object> fillTemplate( MockHttpServletRequest request )
+    {
+        Map<String, Object> model = new HashMap<>( );
+        new HtmlPageInclude( ).fillTemplate( model, null, 0, request );
+
+        return model;
+    }
+}
@@ -1,4 +1,8 @@
 var _baseUrl = document.getElementsByTagName('base')[0].href;
+// Kept when the script is included again by another macro call
+var _pendingHtmlPages = _pendingHtmlPages || [];
+// Maximum number of htmlpages requested in a single call, as set by htmlpage.rest.batch.maxSize
+var _batchMaxSize = _batchMaxSize || 50;
 
 function setBaseUrl( baseUrl )
 {
@@ -7,9 +11,45 @@ function setBaseUrl( baseUrl )
 	}
 }
 
+function setBatchMaxSize( batchMaxSize )
+{
+	if( batchMaxSize > 0 ){
+		_batchMaxSize = batchMaxSize;
+	}
+}
+
+// The calls made while the page is loading are sent together once it is loaded
 function getContentHtmlPage( id, idDefault, idDiv, divClass ){
-    var url = _baseUrl + "rest/htmlpage-api/v1/htmlpage/" + id;
-    var data = {id_default:idDefault};
+    if ( _pendingHtmlPages.length == 0 ) {
+        $( sendPendingHtmlPages );
+    }
+    _pendingHtmlPages.push( { baseUrl: _baseUrl, id: id, idDefault: idDefault, idDiv: idDiv, divClass: divClass } );
+}
+
+function sendPendingHtmlPages( ){
+    var callsByBaseUrl = {};
+    for ( var i = 0; i < _pendingHtmlPages.length; i++ ) {
+        var call = _pendingHtmlPages[i];
+        ( callsByBaseUrl[call.baseUrl] = callsByBaseUrl[call.baseUrl] || [] ).push( call );
+    }
+    _pendingHtmlPages = [];
+
+    for ( var baseUrl in callsByBaseUrl ) {
+        var calls = callsByBaseUrl[baseUrl];
+        for ( var start = 0; start < calls.length; start += _batchMaxSize ) {
+            var batch = calls.slice( start, start + _batchMaxSize );
+            if ( batch.length == 1 ) {
+                getContentHtmlPageNow( batch[0] );
+            } else {
+                getContentHtmlPages( baseUrl, batch );
+            }
+        }
+    }
+}
+
+function getContentHtmlPageNow( call ){
+    var url = call.baseUrl + "rest/htmlpage-api/v1/htmlpage/" + call.id;
+    var data = {id_default:call.idDefault};
     $.ajax({
         url: url,
         type: "GET",
@@ -17,11 +57,42 @@ function getContentHtmlPage( id, idDefault, idDiv, divClass ){
         data: data,
         success: function (data) {
             if ( data.status == 'OK' ) {
-				if( divClass != undefined ){ $("#"+ idDiv ).addClass( 'htmlpage' ) };
-            	$( "#"+ idDiv ).html( data.result ); 
+            	showContentHtmlPage( call, data.result );
             }
         },
         error: function (jqXHR, textStatus, errorThrown) {
         }
-    });   
-}
\ No newline at end of file
+    });
+}
+
+function getContentHtmlPages( baseUrl, calls ){
+    var url = baseUrl + "rest/htmlpage-api/v1/htmlpage";
+    var data = {id:[], id_default:[]};
+    for ( var i = 0; i < calls.length; i++ ) {
+        data.id.push( calls[i].id );
+        data.id_default.push( calls[i].idDefault );
+    }
+    $.ajax({
+        url: url,
+        type: "GET",
+        dataType: "json",
+        data: data,
+        traditional: true,
+        success: function (data) {
+            if ( data.status == 'OK' ) {
+                for ( var i = 0; i < calls.length; i++ ) {
+                    if ( data.result[i] != null ) {
+                    	showContentHtmlPage( calls[i], data.result[i] );
+                    }
+                }
+            }
+        },
+        error: function (jqXHR, textStatus, errorThrown) {
+        }
+    });
+}
+
+function showContentHtmlPage( call, content ){
+	if( call.divClass != undefined ){ $("#"+ call.idDiv ).addClass( 'htmlpage' ) };
+	$( "#"+ call.idDiv ).html( content );
+}